@@ -16,7 +16,9 @@ public record SourceFeedResponse(
 		Instant creationDate,
 		Instant contentUpdateDate,
 		int contentUpdateInterval,
-		int maxEntries)
+		int maxEntries,
+		int failureCount,
+		Instant nextUpdateDate)
 
 implements EntityModel<SourceFeed> {
 	
@@ -29,7 +31,9 @@ implements EntityModel<SourceFeed> {
 			sourceFeed.getCreationDate(),
 			sourceFeed.getContentUpdateDate(),
 			sourceFeed.getContentUpdateInterval(),
-			sourceFeed.getMaxEntries()
+			sourceFeed.getMaxEntries(),
+			sourceFeed.getFailureCount(),
+			sourceFeed.getNextUpdateDate()
 			);
 	}
 
@@ -12,6 +12,10 @@ import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 /**
  * Async/scheduling configuration.
+ * 
+ * Besides the general purpose async executor, it defines a dedicated executor for source
+ * feed fetches, which are dominated by blocking I/O. Fetches run on a fixed thread pool sized by 
+ * {@code bf.scheduler.fetch.max-concurrent-fetches}, the same limit the fetch scheduler enforces.
  */
 @Configuration
 @EnableScheduling
@@ -37,6 +41,18 @@ class AsyncConfiguration implements AsyncConfigurer {
 	}
 
 	
+	@Bean(name = "sourceFeedFetchExecutor")
+	public ThreadPoolTaskExecutor sourceFeedFetchExecutor() {
+		var maxConcurrentFetches = environment.getRequiredProperty("bf.scheduler.fetch.max-concurrent-fetches", Integer.class);
+		var executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(maxConcurrentFetches);
+		executor.setMaxPoolSize(maxConcurrentFetches);
+		executor.setThreadNamePrefix("BF-Fetch-Executor-");
+		executor.setDaemon(true);
+		return executor;
+	}
+	
+	
 	@Override
 	public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
 		return new SimpleAsyncUncaughtExceptionHandler();
@@ -16,4 +16,8 @@ public final class Constants {
 	public static final String DIGEST_FEED_URL = "/digest";
 	
 	public static final String ANONYMOUS_PRINCIPAL = "*anonymous*";
+	
+	public static final String ACTUATOR_URL_BASE = "/actuator";
+	
+	public static final String METRICS_HOST_TAG = "host";
 }
@@ -0,0 +1,52 @@
+package io.bottomfeeder.config;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Configures application-wide HTTP client used to fetch content of source feeds.
+ * 
+ * The client is shared by all content loaders, so open connections are kept in its pool
+ * and reused for subsequent requests to the same host, and requests to HTTP/2-capable
+ * hosts are multiplexed over a single connection. The executor that serves client's
+ * asynchronous tasks is managed by application context and shut down along with it.
+ */
+@Configuration
+class HttpClientConfiguration {
+
+	private final Environment environment;
+	
+	public HttpClientConfiguration(Environment environment) {
+		this.environment = environment;
+	}
+	
+	
+	@Bean(name = "httpClientExecutor", destroyMethod = "shutdownNow")
+	public ExecutorService httpClientExecutor() {
+		var threadFactory = new CustomizableThreadFactory(
+				environment.getProperty("bf.http-client.thread-name-prefix", "BF-Http-Client-"));
+		threadFactory.setDaemon(true);
+		return Executors.newFixedThreadPool(
+				environment.getRequiredProperty("bf.http-client.pool-size", Integer.class), threadFactory);
+	}
+	
+	
+	@Bean
+	public HttpClient httpClient() {
+		var connectTimeout = environment.getRequiredProperty("bf.http-client.connect-timeout-seconds", Integer.class);
+		return HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_2)
+				.followRedirects(HttpClient.Redirect.ALWAYS)
+				.connectTimeout(Duration.ofSeconds(connectTimeout))
+				.executor(httpClientExecutor())
+				.build();
+	}
+	
+}
@@ -0,0 +1,85 @@
+package io.bottomfeeder.config;
+
+import static io.bottomfeeder.config.Constants.METRICS_HOST_TAG;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import io.micrometer.core.instrument.config.MeterFilter;
+
+/**
+ * Configures application metrics, which are exposed for scraping via Prometheus actuator endpoint
+ * (accessible to admin users, also with HTTP Basic authentication).
+ * 
+ * Meters tagged with source host are limited to {@code bf.metrics.max-host-tags} distinct hosts, 
+ * and any hosts beyond the limit are reported under a single tag value, so that the number of time 
+ * series doesn't grow with the number of source hosts. Thread pool executors are instrumented 
+ * to report pool size, active tasks and queue depth.
+ */
+@Configuration
+class MetricsConfiguration {
+
+	private static final String OTHER_HOST = "other";
+	
+	
+	@Bean
+	public MeterFilter hostTagLimitFilter(@Value("${bf.metrics.max-host-tags:100}") int maxHostTags) {
+		return new HostTagLimitFilter(maxHostTags);
+	}
+	
+	
+	@Bean
+	public MeterBinder executorMetrics(
+			@Qualifier("taskExecutor") ThreadPoolTaskExecutor taskExecutor, 
+			@Qualifier("sourceFeedFetchExecutor") ThreadPoolTaskExecutor sourceFeedFetchExecutor) {
+		return registry -> {
+			bindExecutorMetrics(registry, taskExecutor, "task");
+			bindExecutorMetrics(registry, sourceFeedFetchExecutor, "source-feed-fetch");
+		};
+	}
+	
+	
+	private static void bindExecutorMetrics(MeterRegistry registry, ThreadPoolTaskExecutor executor, String name) {
+		new ExecutorServiceMetrics(executor.getThreadPoolExecutor(), name, Tags.empty()).bindTo(registry);
+	}
+	
+	
+	/**
+	 * Meter filter replacing host tag values beyond the first {@code maxHosts} distinct ones.
+	 */
+	private static final class HostTagLimitFilter implements MeterFilter {
+		
+		private final int maxHosts;
+		private final Set<String> hosts = ConcurrentHashMap.newKeySet();
+		
+		HostTagLimitFilter(int maxHosts) {
+			this.maxHosts = maxHosts;
+		}
+		
+		@Override
+		public Meter.Id map(Meter.Id id) {
+			var host = id.getTag(METRICS_HOST_TAG);
+			if (host == null || hosts.contains(host))
+				return id;
+			
+			// The limit may be slightly exceeded by concurrent registrations, which is harmless
+			if (hosts.size() < maxHosts) {
+				hosts.add(host);
+				return id;
+			}
+			return id.replaceTags(Tags.of(id.getTagsAsIterable()).and(METRICS_HOST_TAG, OTHER_HOST));
+		}
+	}
+	
+}
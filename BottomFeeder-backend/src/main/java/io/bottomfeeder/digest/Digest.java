@@ -75,6 +75,12 @@ public class Digest {
 	
 	@Column(name = "is_private", nullable = false)
 	private boolean isPrivate;
+	
+	@Column(name = "content_change_date")
+	private Instant contentChangeDate = creationDate;
+	
+	@Column(name = "config_version")
+	private Integer configVersion = 0;
 
 	@NotNull(message = VALIDATION_OWNER_NULL)
 	@ManyToOne(optional = false)
@@ -140,6 +146,22 @@ public class Digest {
 		this.isPrivate = isPrivate;
 	}
 
+	public Instant getContentChangeDate() {
+		return contentChangeDate != null ? contentChangeDate : creationDate;
+	}
+
+	public void setContentChangeDate(Instant contentChangeDate) {
+		this.contentChangeDate = contentChangeDate;
+	}
+
+	public int getConfigVersion() {
+		return configVersion != null ? configVersion : 0;
+	}
+
+	public void setConfigVersion(int configVersion) {
+		this.configVersion = configVersion;
+	}
+
 	public User getOwner() {
 		return owner;
 	}
@@ -0,0 +1,14 @@
+package io.bottomfeeder.digest;
+
+/**
+ * Application event published when a change affecting the output feed of a digest is made, 
+ * such as update of digest settings, its source feeds, entry filters or content of source feeds.
+ * Changes other than update of source feeds content are marked as configuration changes.
+ */
+public record DigestChangeEvent(long digestId, String digestExternalId, boolean configChange) {
+
+	public DigestChangeEvent(Digest digest, boolean configChange) {
+		this(digest.getId(), digest.getExternalId(), configChange);
+	}
+	
+}
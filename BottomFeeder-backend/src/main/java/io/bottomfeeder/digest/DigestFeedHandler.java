@@ -0,0 +1,19 @@
+package io.bottomfeeder.digest;
+
+import com.rometools.rome.feed.synd.SyndFeed;
+
+/**
+ * Receives digest feed as it's being loaded: first the feed itself, containing no entries, then 
+ * its entries one at a time, as XML fragments pre-rendered in the feed's format.
+ */
+public interface DigestFeedHandler {
+
+	void startFeed(SyndFeed feed);
+	
+	
+	void writeEntry(byte[] entryFragment);
+	
+	
+	void endFeed();
+	
+}
@@ -0,0 +1,9 @@
+package io.bottomfeeder.digest;
+
+import java.time.Instant;
+
+/**
+ * Contains digest data required to check whether digest feed has changed since it was last 
+ * served, without loading the digest itself.
+ */
+public record DigestFeedState(long digestId, Instant contentChangeDate, int configVersion, boolean isPrivate) {}
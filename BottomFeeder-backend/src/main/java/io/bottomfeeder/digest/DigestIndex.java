@@ -0,0 +1,137 @@
+package io.bottomfeeder.digest;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import io.bottomfeeder.util.TimedCache;
+import io.bottomfeeder.util.TimedCacheMetrics;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * In-memory index of digests by external ID, which allows to check access to digest feeds 
+ * and to determine their state without querying the database on every feed request.
+ * 
+ * The index is loaded on startup, and entries are reloaded upon receiving {@code DigestChangeEvent}
+ * for the digest, once the transaction that made the change is committed. Digests missing from index
+ * are looked up in the database, so that the index is never a source of false negatives. Digests not found
+ * in the database are remembered for a short time, so that requests for nonexistent digests don't query 
+ * the database every time; they are forgotten as soon as digest with the same external ID is changed.
+ * 
+ * Reads are lock-free, and database is queried without holding any lock. Reloads are counted per external ID:
+ * entry loaded concurrently with a reload of the same digest might be stale, so it's not stored, and only 
+ * the latest reload of the digest stores its entry. Lookups and reloads of other digests are not affected.
+ */
+@Component
+public class DigestIndex {
+
+	private static final Logger logger = LoggerFactory.getLogger(DigestIndex.class);
+	
+	private final DigestRepository digestRepository;
+	private final Map<String, DigestIndexEntry> entriesByExternalId = new ConcurrentHashMap<>();
+	private final TimedCache<String, Boolean> missingExternalIds;
+	// Kept for every digest changed since startup, so that a version can't reappear after being removed
+	private final Map<String, Long> reloadVersions = new ConcurrentHashMap<>();
+	
+	
+	public DigestIndex(
+			DigestRepository digestRepository, 
+			@Value("${bf.digest-index.missing-cache.max-size:10000}") int missingCacheMaxSize,
+			@Value("${bf.digest-index.missing-cache.ttl-seconds:10}") long missingCacheTimeToLiveSeconds,
+			MeterRegistry meterRegistry) {
+		this.digestRepository = digestRepository;
+		this.missingExternalIds = new TimedCache<>(missingCacheMaxSize, Duration.ofSeconds(missingCacheTimeToLiveSeconds));
+		Gauge.builder("bf.digest.index.size", entriesByExternalId, Map::size)
+				.description("Number of digests in digest index")
+				.register(meterRegistry);
+		new TimedCacheMetrics("digest-index-missing", missingExternalIds::getStats).bindTo(meterRegistry);
+	}
+	
+	
+	@EventListener(ApplicationReadyEvent.class)
+	public void loadIndex() {
+		var versionsBefore = new HashMap<>(reloadVersions);
+		
+		// Digests changed while loading are left to their reloads
+		for (var entry : digestRepository.findIndexEntries())
+			storeEntry(entry.externalId(), entry, versionsBefore.get(entry.externalId()));
+		
+		logger.info(String.format("Loaded %d digests into digest index", entriesByExternalId.size()));
+	}
+	
+	
+	public Optional<DigestIndexEntry> getEntry(String externalId) {
+		var entry = entriesByExternalId.get(externalId);
+		if (entry != null)
+			return Optional.of(entry);
+		
+		return missingExternalIds.get(externalId) == null ? loadEntry(externalId, false) : Optional.empty();
+	}
+	
+	
+	public Optional<DigestFeedState> getDigestFeedState(String externalId) {
+		return getEntry(externalId).map(DigestIndexEntry::feedState);
+	}
+	
+	
+	public boolean canAccessDigestFeed(String externalId, Long userId) {
+		return getEntry(externalId).map(entry -> entry.canAccessFeed(userId)).orElse(false);
+	}
+	
+	
+	// Runs after other listeners evicting data derived from digest state (see DigestFeedService)
+	@TransactionalEventListener(fallbackExecution = true)
+	@Order(Ordered.LOWEST_PRECEDENCE)
+	public void handleDigestChange(DigestChangeEvent event) {
+		loadEntry(event.digestExternalId(), true);
+	}
+	
+	
+	private Optional<DigestIndexEntry> loadEntry(String externalId, boolean reload) {
+		Long versionBefore;
+		if (reload) {
+			versionBefore = reloadVersions.merge(externalId, 1L, Long::sum);
+			missingExternalIds.invalidate(externalId);
+		}
+		else {
+			versionBefore = reloadVersions.get(externalId);
+		}
+		
+		var entry = digestRepository.findIndexEntryByExternalId(externalId);
+		storeEntry(externalId, entry.orElse(null), versionBefore);
+		return entry;
+	}
+	
+	
+	private void storeEntry(String externalId, DigestIndexEntry entry, Long versionBefore) {
+		// Version is checked and entry is stored atomically with respect to reloads of the same digest
+		reloadVersions.compute(externalId, (key, version) -> {
+			if (Objects.equals(version, versionBefore)) {
+				if (entry != null) {
+					entriesByExternalId.put(key, entry);
+					missingExternalIds.invalidate(key);
+				}
+				else {
+					entriesByExternalId.remove(key);
+					missingExternalIds.put(key, Boolean.TRUE);
+				}
+			}
+			return version;
+		});
+	}
+	
+}
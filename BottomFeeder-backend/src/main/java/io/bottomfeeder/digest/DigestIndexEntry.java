@@ -0,0 +1,21 @@
+package io.bottomfeeder.digest;
+
+import java.time.Instant;
+
+/**
+ * Contains digest data kept in digest index, which is sufficient to check access to digest feed
+ * and to determine its state without loading the digest itself.
+ */
+public record DigestIndexEntry(long digestId, String externalId, long ownerId, Instant contentChangeDate, 
+		int configVersion, boolean isPrivate) {
+	
+	public DigestFeedState feedState() {
+		return new DigestFeedState(digestId, contentChangeDate, configVersion, isPrivate);
+	}
+	
+	
+	public boolean canAccessFeed(Long userId) {
+		return !isPrivate || (userId != null && userId == ownerId);
+	}
+	
+}
@@ -1,9 +1,12 @@
 package io.bottomfeeder.digest;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 
 import io.bottomfeeder.user.User;
@@ -28,6 +31,51 @@ public interface DigestRepository extends JpaRepository<Digest, Long> {
 	boolean existsByTitleIgnoreCaseAndOwner(String title, User owner);
 	
 	
+	@Query("""
+			select 
+				new io.bottomfeeder.digest.DigestIndexEntry(
+					digest.id, 
+					digest.externalId, 
+					digest.owner.id, 
+					coalesce(digest.contentChangeDate, digest.creationDate), 
+					coalesce(digest.configVersion, 0), 
+					digest.isPrivate) 
+			from 
+				Digest digest 
+		   """)
+	List<DigestIndexEntry> findIndexEntries();
+	
+	
+	@Query("""
+			select 
+				new io.bottomfeeder.digest.DigestIndexEntry(
+					digest.id, 
+					digest.externalId, 
+					digest.owner.id, 
+					coalesce(digest.contentChangeDate, digest.creationDate), 
+					coalesce(digest.configVersion, 0), 
+					digest.isPrivate) 
+			from 
+				Digest digest 
+			where 
+				digest.externalId = :externalId
+		   """)
+	Optional<DigestIndexEntry> findIndexEntryByExternalId(String externalId);
+	
+	
+	@Modifying(flushAutomatically = true)
+	@Query("""
+			update 
+				Digest digest 
+			set 
+				digest.contentChangeDate = :changeDate, 
+				digest.configVersion = coalesce(digest.configVersion, 0) + :configVersionIncrement 
+			where 
+				digest.id = :digestId
+		   """)
+	int registerChange(long digestId, Instant changeDate, int configVersionIncrement);
+	
+	
 	@Query("""
 			select 
 				case when (count(digest) = 1) then true else false end 
@@ -41,14 +89,12 @@ public interface DigestRepository extends JpaRepository<Digest, Long> {
 	
 	@Query("""
 			select 
-				case when (count(digest) = 1) then true else false end 
+				count(digest) 
 			from 
 				Digest digest 
 			where 
-				digest.externalId = :digestExternalId and 
-				(:userId = digest.owner.id or
-				digest.isPrivate = false)
-				
+				digest.id in :digestIds and :userId = digest.owner.id
 		   """)
-	boolean canAccessDigestFeed(String digestExternalId, Long userId);
+	long countOwnedDigests(Collection<Long> digestIds, Long userId);
+	
 }
@@ -2,15 +2,22 @@ package io.bottomfeeder.digest;
 
 import static java.lang.String.format;
 
+import java.time.Instant;
+import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
-import com.rometools.rome.feed.synd.SyndFeed;
 import com.rometools.rome.feed.synd.SyndFeedImpl;
 
 import io.bottomfeeder.digest.feed.DigestFeedFormat;
@@ -26,24 +33,30 @@ import io.bottomfeeder.user.User;
 public class DigestService {
 
 	private final DigestRepository digestRepository;
+	private final DigestIndex digestIndex;
 	private final SourceFeedService sourceFeedService;
 	private final SourceFeedEntryService sourceFeedEntryService;
 	private final EntryFilterService entryFilterService;
+	private final ApplicationEventPublisher eventPublisher;
 	private final String applicationName;
 	private final String applicationUrl;
 	
 	
 	public DigestService(
 			DigestRepository digestRepository, 
+			DigestIndex digestIndex,
 			SourceFeedService sourceFeedService,
 			SourceFeedEntryService sourceFeedEntryService,
 			EntryFilterService entryFilterService,
+			ApplicationEventPublisher eventPublisher,
 			@Value("${bf.application.name}") String applicationName,
 			@Value("${bf.application.url}") String applicationUrl) {
 		this.digestRepository = digestRepository;
+		this.digestIndex = digestIndex;
 		this.sourceFeedService = sourceFeedService;
 		this.sourceFeedEntryService = sourceFeedEntryService;
 		this.entryFilterService = entryFilterService;
+		this.eventPublisher = eventPublisher;
 		this.applicationName = checkPropertyValue(applicationName, "Application name").trim();
 		this.applicationUrl = checkPropertyValue(applicationUrl, "Application URL").trim();
 	}
@@ -89,7 +102,9 @@ public class DigestService {
 		if (checkExternalIdDuplicate && digestRepository.existsByExternalId(externalId))
 			throw new DigestException(format("Duplicate digest external ID: %s", externalId));
 		
-		return digestRepository.save(new Digest(title, maxEntries, isPrivate, owner, externalId));
+		var digest = digestRepository.save(new Digest(title, maxEntries, isPrivate, owner, externalId));
+		eventPublisher.publishEvent(new DigestChangeEvent(digest, true));
+		return digest;
 	}
 	
 	
@@ -113,7 +128,9 @@ public class DigestService {
 		digest.setMaxEntries(newMaxEntries);
 		digest.setPrivate(newIsPrivate);
 		
-		return digestRepository.save(digest);
+		digest = digestRepository.save(digest);
+		eventPublisher.publishEvent(new DigestChangeEvent(digest, true));
+		return digest;
 	}
 	
 
@@ -133,6 +150,7 @@ public class DigestService {
 		sourceFeedService.deleteDigestSourceFeeds(digest);
 		entryFilterService.deleteDigestEntryFilters(digest.getId());
 		digestRepository.delete(digest);
+		eventPublisher.publishEvent(new DigestChangeEvent(digest, true));
 	}
 	
 	
@@ -142,12 +160,27 @@ public class DigestService {
 	}
 
 	
+	public Optional<DigestFeedState> getDigestFeedState(String externalId) {
+		return digestIndex.getDigestFeedState(externalId);
+	}
+	
+	
+	// Change is registered once the transaction that made it is committed, so that the digest row is not locked 
+	// by source feed updates, but before other listeners, such as digest index, read it
+	@TransactionalEventListener(fallbackExecution = true)
+	@Order(Ordered.HIGHEST_PRECEDENCE)
+	@Transactional(propagation = Propagation.REQUIRES_NEW)
+	public void handleDigestChange(DigestChangeEvent event) {
+		digestRepository.registerChange(event.digestId(), Instant.now(), event.configChange() ? 1 : 0);
+	}
+	
+	
 	public String getDigestFeedLink(String digestExternalId, DigestFeedFormat digestFeedFormat) {
 		return format("%s/digest/%s/feed.%s", applicationUrl, digestExternalId, digestFeedFormat.extension());
 	}
 	
 	
-	public SyndFeed getDigestFeed(String externalId, DigestFeedFormat digestFeedFormat) {
+	public void writeDigestFeed(String externalId, DigestFeedFormat digestFeedFormat, DigestFeedHandler handler) {
 		var digest = getDigest(externalId);
 		
 		var digestFeed = new SyndFeedImpl();
@@ -157,9 +190,11 @@ public class DigestService {
 		digestFeed.setDescription(digest.getTitle());
 		digestFeed.setGenerator(applicationName);
 		digestFeed.setLink(getDigestFeedLink(externalId, digestFeedFormat));
-		digestFeed.setEntries(sourceFeedEntryService.loadDigestFeedContent(digest, digestFeedFormat));
+		digestFeed.setPublishedDate(Date.from(digest.getContentChangeDate()));
 		
-		return digestFeed;
+		handler.startFeed(digestFeed);
+		sourceFeedEntryService.loadDigestFeedContent(digest, digestFeedFormat, handler::writeEntry);
+		handler.endFeed();
 	}
 	
 	
@@ -0,0 +1,54 @@
+package io.bottomfeeder.digest.feed;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An output stream that passes written data to the underlying stream and also captures it, 
+ * as long as the captured data does not exceed the specified max size.
+ */
+final class CapturingOutputStream extends FilterOutputStream {
+
+	private final int maxCaptureSize;
+	private ByteArrayOutputStream capture = new ByteArrayOutputStream();
+	
+	
+	CapturingOutputStream(OutputStream out, int maxCaptureSize) {
+		super(out);
+		this.maxCaptureSize = maxCaptureSize;
+	}
+	
+	
+	@Override
+	public void write(int b) throws IOException {
+		out.write(b);
+		if (canCapture(1))
+			capture.write(b);
+	}
+	
+	
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		out.write(b, off, len);
+		if (canCapture(len))
+			capture.write(b, off, len);
+	}
+	
+	
+	/**
+	 * Returns captured data, or {@code null} if data exceeded max capture size.
+	 */
+	byte[] getCaptured() {
+		return capture != null ? capture.toByteArray() : null;
+	}
+	
+	
+	private boolean canCapture(int length) {
+		if (capture != null && capture.size() + length > maxCaptureSize)
+			capture = null;
+		return capture != null;
+	}
+	
+}
@@ -0,0 +1,44 @@
+package io.bottomfeeder.digest.feed;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An output stream that passes written data to the underlying stream, but doesn't pass flushes to it
+ * until the specified number of bytes is written, so that data written so far can be held by
+ * the underlying stream's buffer.
+ */
+final class DeferredFlushOutputStream extends FilterOutputStream {
+
+	private final int flushThreshold;
+	private long writtenSize;
+	
+	
+	DeferredFlushOutputStream(OutputStream out, int flushThreshold) {
+		super(out);
+		this.flushThreshold = flushThreshold;
+	}
+	
+	
+	@Override
+	public void write(int b) throws IOException {
+		out.write(b);
+		writtenSize++;
+	}
+	
+	
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		out.write(b, off, len);
+		writtenSize += len;
+	}
+	
+	
+	@Override
+	public void flush() throws IOException {
+		if (writtenSize >= flushThreshold)
+			out.flush();
+	}
+
+}
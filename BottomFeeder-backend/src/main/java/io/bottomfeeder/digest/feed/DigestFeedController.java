@@ -2,10 +2,16 @@ package io.bottomfeeder.digest.feed;
 
 import static io.bottomfeeder.config.Constants.DIGEST_FEED_URL;
 
+import java.time.Duration;
+
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -15,43 +21,117 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.View;
 
-import io.bottomfeeder.digest.DigestService;
+import io.bottomfeeder.digest.DigestFeedState;
 import io.bottomfeeder.security.permission.PermissionExpressions;
 
 /**
  * A controller providing access to aggregated RSS/Atom output feed of the digest.
+ * 
+ * Responses carry validators derived from digest's content change date and configuration version,
+ * so that conditional requests for unchanged feeds are answered with "304 Not Modified" before 
+ * any entries are loaded.
+ * 
+ * Feeds are served gzip-compressed to clients that accept such encoding.
  */
 @Controller
 @RequestMapping(DIGEST_FEED_URL)
 class DigestFeedController {
 
 	private static final Logger logger = LoggerFactory.getLogger(DigestFeedController.class);
+	private static final String GZIP_ENCODING = "gzip";
 	
-	private final DigestService digestService;
+	private final DigestFeedService digestFeedService;
+	private final Duration maxAge;
 	
-	public DigestFeedController(DigestService digestService) {
-		this.digestService = digestService;
+	public DigestFeedController(
+			DigestFeedService digestFeedService,
+			@Value("${bf.digest-feed.max-age-seconds:60}") long maxAgeSeconds) {
+		this.digestFeedService = digestFeedService;
+		this.maxAge = Duration.ofSeconds(maxAgeSeconds);
 	}
 
 
 	@PreAuthorize(PermissionExpressions.READ_DIGEST_FEED)
 	@GetMapping("/{digestExternalId}/feed.rss")
-	public View getRssDigestFeed(@PathVariable String digestExternalId) {
-		return getDigestFeedView(digestExternalId, DigestFeedFormat.RSS_2_0);
+	public View getRssDigestFeed(@PathVariable String digestExternalId, WebRequest webRequest, 
+			HttpServletResponse response) {
+		return getDigestFeedView(digestExternalId, DigestFeedFormat.RSS_2_0, webRequest, response);
 	}
 	
 	
 	@PreAuthorize(PermissionExpressions.READ_DIGEST_FEED)
 	@GetMapping("/{digestExternalId}/feed.atom")
-	public View getAtomDigestFeed(@PathVariable String digestExternalId) {
-		return getDigestFeedView(digestExternalId, DigestFeedFormat.ATOM_1_0);
+	public View getAtomDigestFeed(@PathVariable String digestExternalId, WebRequest webRequest, 
+			HttpServletResponse response) {
+		return getDigestFeedView(digestExternalId, DigestFeedFormat.ATOM_1_0, webRequest, response);
+	}
+	
+	
+	private View getDigestFeedView(String digestExternalId, DigestFeedFormat digestFeedFormat, 
+			WebRequest webRequest, HttpServletResponse response) {
+		var digestFeedState = digestFeedService.getDigestFeedState(digestExternalId);
+		response.setHeader(HttpHeaders.CACHE_CONTROL, getCacheControl(digestFeedState).getHeaderValue());
+		response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+		
+		// Returning no view for not modified feed completes request with status set by the check
+		var lastModified = digestFeedState.contentChangeDate().toEpochMilli();
+		if (webRequest.checkNotModified(getETag(digestFeedState, digestFeedFormat), lastModified))
+			return null;
+		
+		var gzip = acceptsGzip(webRequest.getHeader(HttpHeaders.ACCEPT_ENCODING));
+		var contentEncoding = gzip ? GZIP_ENCODING : null;
+		var renderedFeed = digestFeedService.getCachedDigestFeed(digestExternalId, digestFeedFormat);
+		if (renderedFeed != null) {
+			return DigestFeedView.rendered(digestFeedFormat, 
+					gzip ? renderedFeed.gzipContent() : renderedFeed.content(), contentEncoding);
+		}
+		else {
+			return DigestFeedView.streamed(digestFeedFormat, outputStream -> 
+					digestFeedService.writeDigestFeed(digestExternalId, digestFeedFormat, outputStream, gzip), 
+					contentEncoding);
+		}
+	}
+	
+	
+	private CacheControl getCacheControl(DigestFeedState digestFeedState) {
+		var cacheControl = CacheControl.maxAge(maxAge).mustRevalidate();
+		return digestFeedState.isPrivate() ? cacheControl.cachePrivate() : cacheControl.cachePublic();
+	}
+	
+	
+	private static String getETag(DigestFeedState digestFeedState, DigestFeedFormat digestFeedFormat) {
+		// Weak validator, as the same content may be served with different encodings
+		return String.format("W/\"%s-%x-%d\"", digestFeedFormat.extension(), 
+				digestFeedState.contentChangeDate().toEpochMilli(), digestFeedState.configVersion());
+	}
+	
+	
+	private static boolean acceptsGzip(String acceptEncoding) {
+		if (acceptEncoding == null)
+			return false;
+		
+		for (var coding : acceptEncoding.split(",")) {
+			var parts = coding.split(";");
+			if (parts[0].trim().equalsIgnoreCase(GZIP_ENCODING))
+				return parts.length == 1 || !isZeroQuality(parts[1]);
+		}
+		return false;
 	}
 	
 	
-	private View getDigestFeedView(String digestExternalId, DigestFeedFormat digestFeedFormat) {
-		return new DigestFeedView(digestFeedFormat, digestService.getDigestFeed(digestExternalId, digestFeedFormat));
+	private static boolean isZeroQuality(String parameter) {
+		var nameAndValue = parameter.split("=", 2);
+		if (nameAndValue.length < 2 || !nameAndValue[0].trim().equalsIgnoreCase("q"))
+			return false;
+		try {
+			return Double.parseDouble(nameAndValue[1].trim()) == 0;
+		}
+		catch (NumberFormatException e) {
+			return false;
+		}
 	}
 	
 	
@@ -0,0 +1,19 @@
+package io.bottomfeeder.digest.feed;
+
+import io.bottomfeeder.base.EntityException;
+
+/**
+ * Exception that describes an error occured during rendering of digest feed.
+ */
+@SuppressWarnings("serial")
+class DigestFeedException extends EntityException {
+
+	DigestFeedException(String message) {
+		super(message);
+	}
+
+	DigestFeedException(Throwable cause) {
+		super(cause);
+	}
+	
+}
@@ -0,0 +1,151 @@
+package io.bottomfeeder.digest.feed;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import io.bottomfeeder.digest.DigestChangeEvent;
+import io.bottomfeeder.digest.DigestFeedState;
+import io.bottomfeeder.digest.DigestService;
+import io.bottomfeeder.util.TimedCache;
+import io.bottomfeeder.util.TimedCacheMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * A service providing rendered digest feed documents.
+ * 
+ * Rendered documents are cached per digest and feed format, and evicted from cache 
+ * upon receiving {@code DigestChangeEvent} for the digest, once the transaction that 
+ * made the change is committed. Time-to-live of cached documents only serves as a safety net.
+ * 
+ * Documents that are not cached are streamed to the client while being rendered, with entries written 
+ * one at a time. Streamed document is captured for caching along the way, unless it exceeds the max size 
+ * of cached document, in which case it's not cached at all.
+ * 
+ * Cached documents are kept both uncompressed and gzip-compressed, so that they can be served
+ * to clients accepting either encoding without compressing them on each request.
+ * 
+ * Render time of documents is recorded by feed format. Since documents are streamed while being 
+ * rendered, it includes the time of writing them to the client.
+ */
+@Service
+class DigestFeedService {
+
+	private static final int GZIP_BUFFER_SIZE = 8192;
+	
+	private final DigestService digestService;
+	private final TimedCache<RenderedFeedKey, RenderedFeed> renderedFeedCache;
+	private final int maxCachedFeedSize;
+	private final Map<DigestFeedFormat, Timer> renderTimers = new EnumMap<>(DigestFeedFormat.class);
+	
+	// Guarded by this
+	private long invalidationCount;
+	
+	
+	private record RenderedFeedKey(String digestExternalId, DigestFeedFormat digestFeedFormat) {}
+	
+	
+	/**
+	 * Rendered digest feed document, uncompressed and gzip-compressed.
+	 */
+	record RenderedFeed(byte[] content, byte[] gzipContent) {}
+	
+	
+	public DigestFeedService(
+			DigestService digestService,
+			@Value("${bf.digest-feed-cache.max-size:200}") int cacheMaxSize,
+			@Value("${bf.digest-feed-cache.ttl-minutes:30}") long cacheTimeToLiveMinutes,
+			@Value("${bf.digest-feed-cache.max-document-size-kb:2048}") int maxCachedFeedSizeKb,
+			MeterRegistry meterRegistry) {
+		this.digestService = digestService;
+		this.renderedFeedCache = new TimedCache<>(cacheMaxSize, Duration.ofMinutes(cacheTimeToLiveMinutes));
+		this.maxCachedFeedSize = maxCachedFeedSizeKb * 1024;
+		
+		new TimedCacheMetrics("digest-feed", renderedFeedCache::getStats).bindTo(meterRegistry);
+		for (var digestFeedFormat : DigestFeedFormat.values()) {
+			renderTimers.put(digestFeedFormat, Timer.builder("bf.digest.feed.render")
+					.tag("format", digestFeedFormat.extension())
+					.description("Time spent rendering digest feed documents")
+					.publishPercentileHistogram()
+					.register(meterRegistry));
+		}
+	}
+	
+	
+	DigestFeedState getDigestFeedState(String digestExternalId) {
+		return digestService.getDigestFeedState(digestExternalId).orElseThrow(
+				() -> new DigestFeedException(String.format("Digest with id '%s' not found", digestExternalId)));
+	}
+	
+	
+	RenderedFeed getCachedDigestFeed(String digestExternalId, DigestFeedFormat digestFeedFormat) {
+		return renderedFeedCache.get(new RenderedFeedKey(digestExternalId, digestFeedFormat));
+	}
+	
+	
+	void writeDigestFeed(String digestExternalId, DigestFeedFormat digestFeedFormat, OutputStream outputStream, 
+			boolean gzip) throws IOException {
+		long invalidationCountBefore;
+		synchronized (this) {
+			invalidationCountBefore = invalidationCount;
+		}
+		
+		// Both uncompressed and compressed output are captured, so that the document is compressed only once
+		var compressedCapture = gzip ? new CapturingOutputStream(outputStream, maxCachedFeedSize) : null;
+		var gzipOutputStream = gzip ? new GZIPOutputStream(compressedCapture, GZIP_BUFFER_SIZE) : null;
+		var capture = new CapturingOutputStream(gzip ? gzipOutputStream : outputStream, maxCachedFeedSize);
+		var renderStartTime = System.nanoTime();
+		digestService.writeDigestFeed(digestExternalId, digestFeedFormat, new DigestFeedWriter(digestFeedFormat, capture));
+		if (gzipOutputStream != null)
+			gzipOutputStream.finish();
+		renderTimers.get(digestFeedFormat).record(System.nanoTime() - renderStartTime, TimeUnit.NANOSECONDS);
+		
+		var content = capture.getCaptured();
+		if (content != null) {
+			var gzipContent = compressedCapture != null ? compressedCapture.getCaptured() : null;
+			if (gzipContent == null)
+				gzipContent = compress(content);
+			
+			synchronized (this) {
+				// Document rendered concurrently with invalidation might be stale, so it's not cached
+				if (invalidationCount == invalidationCountBefore) {
+					renderedFeedCache.put(new RenderedFeedKey(digestExternalId, digestFeedFormat), 
+							new RenderedFeed(content, gzipContent));
+				}
+			}
+		}
+	}
+	
+	
+	private static byte[] compress(byte[] content) throws IOException {
+		var output = new ByteArrayOutputStream(content.length / 4);
+		try (var gzipOutputStream = new GZIPOutputStream(output, GZIP_BUFFER_SIZE)) {
+			gzipOutputStream.write(content);
+		}
+		return output.toByteArray();
+	}
+	
+	
+	// Documents must be evicted before digest index exposes the new feed state, so that documents
+	// rendered before the change are never served with validators derived from the new state
+	@TransactionalEventListener(fallbackExecution = true)
+	@Order(Ordered.HIGHEST_PRECEDENCE)
+	public synchronized void handleDigestChange(DigestChangeEvent event) {
+		invalidationCount++;
+		for (var digestFeedFormat : DigestFeedFormat.values())
+			renderedFeedCache.invalidate(new RenderedFeedKey(event.digestExternalId(), digestFeedFormat));
+	}
+	
+}
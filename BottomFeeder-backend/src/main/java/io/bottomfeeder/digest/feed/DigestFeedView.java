@@ -1,39 +1,106 @@
 package io.bottomfeeder.digest.feed;
 
-import java.io.OutputStreamWriter;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.servlet.view.AbstractView;
 
-import com.rometools.rome.feed.synd.SyndFeed;
-import com.rometools.rome.io.SyndFeedOutput;
-
 /**
  * A view for RSS/Atom-formatted XML document representing digest feed content.
+ * The document is either rendered beforehand and written to response as is, or streamed 
+ * to response while it's being rendered. The content may be compressed, in which case 
+ * its encoding is specified.
+ * 
+ * Streamed document is held in response buffer until it exceeds the buffer size, so that if rendering 
+ * fails before that, the response is reset and the error is sent instead. If rendering fails after
+ * the response is committed, the error is propagated, so that the connection is closed instead of
+ * completing the response with a truncated document.
  */
 class DigestFeedView extends AbstractView {
 
-	private final SyndFeed digestFeed;
+	private static final int STREAMED_BUFFER_SIZE = 32 * 1024;
+	
+	private final ContentWriter contentWriter;
+	private final int contentLength;
+	private final String contentEncoding;
 
 	
-	DigestFeedView(DigestFeedFormat digestFeedFormat, SyndFeed digestFeed) {
-		this.digestFeed = digestFeed;
+	/**
+	 * Writes document content to output stream.
+	 */
+	@FunctionalInterface
+	interface ContentWriter {
+		
+		void write(OutputStream outputStream) throws IOException;
+		
+	}
+	
+	
+	private DigestFeedView(DigestFeedFormat digestFeedFormat, ContentWriter contentWriter, int contentLength,
+			String contentEncoding) {
+		this.contentWriter = contentWriter;
+		this.contentLength = contentLength;
+		this.contentEncoding = contentEncoding;
 		setContentType(digestFeedFormat.contentType());
 	}
+	
+	
+	static DigestFeedView rendered(DigestFeedFormat digestFeedFormat, byte[] renderedDigestFeed, 
+			String contentEncoding) {
+		return new DigestFeedView(digestFeedFormat, outputStream -> outputStream.write(renderedDigestFeed), 
+				renderedDigestFeed.length, contentEncoding);
+	}
+	
+	
+	static DigestFeedView streamed(DigestFeedFormat digestFeedFormat, ContentWriter contentWriter, 
+			String contentEncoding) {
+		return new DigestFeedView(digestFeedFormat, contentWriter, -1, contentEncoding);
+	}
 
 
 	@Override
 	protected void renderMergedOutputModel(Map<String, Object> model, HttpServletRequest request,
 			HttpServletResponse response) throws Exception {
 		setResponseContentType(request, response);
+		if (contentLength >= 0)
+			response.setContentLength(contentLength);
+		else
+			response.setBufferSize(STREAMED_BUFFER_SIZE);
+		if (contentEncoding != null)
+			response.setHeader(HttpHeaders.CONTENT_ENCODING, contentEncoding);
 
-		var feedOutput = new SyndFeedOutput();
-		var outputStream = response.getOutputStream();
-		feedOutput.output(digestFeed, new OutputStreamWriter(outputStream, digestFeed.getEncoding()));
-		outputStream.flush();
+		if (contentLength >= 0) {
+			var outputStream = response.getOutputStream();
+			contentWriter.write(outputStream);
+			outputStream.flush();
+		}
+		else {
+			writeStreamed(request, response);
+		}
+	}
+	
+	
+	private void writeStreamed(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		try {
+			contentWriter.write(new DeferredFlushOutputStream(response.getOutputStream(), STREAMED_BUFFER_SIZE));
+			response.flushBuffer();
+		}
+		catch (IOException | RuntimeException e) {
+			if (response.isCommitted()) {
+				logger.error(String.format("Failed to stream digest feed after response was committed, "
+						+ "closing connection: %s", request.getRequestURI()), e);
+				throw e;
+			}
+			
+			logger.error(String.format("Failed to render digest feed: %s", request.getRequestURI()), e);
+			response.reset();
+			response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+		}
 	}
 
 }
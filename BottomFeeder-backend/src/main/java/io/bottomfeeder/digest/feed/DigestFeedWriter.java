@@ -0,0 +1,144 @@
+package io.bottomfeeder.digest.feed;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.rometools.rome.feed.synd.SyndFeed;
+
+import io.bottomfeeder.digest.DigestFeedHandler;
+
+/**
+ * Writes RSS/Atom-formatted XML document of digest feed to output stream as the feed is being loaded.
+ * 
+ * Feed header elements are written using StAX, while entries, which come as pre-rendered XML fragments, 
+ * are written to the output as is, so that no more than a single entry is held by the writer at a time.
+ */
+final class DigestFeedWriter implements DigestFeedHandler {
+
+	private static final XMLOutputFactory xmlOutputFactory = XMLOutputFactory.newFactory();
+	private static final String ATOM_NAMESPACE = "http://www.w3.org/2005/Atom";
+	
+	private final DigestFeedFormat digestFeedFormat;
+	private final OutputStream output;
+	private final Writer writer;
+	private final XMLStreamWriter xmlWriter;
+	
+	
+	DigestFeedWriter(DigestFeedFormat digestFeedFormat, OutputStream output) {
+		this.digestFeedFormat = digestFeedFormat;
+		this.output = output;
+		this.writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+		try {
+			this.xmlWriter = xmlOutputFactory.createXMLStreamWriter(writer);
+		}
+		catch (XMLStreamException e) {
+			throw new DigestFeedException(e);
+		}
+	}
+	
+	
+	@Override
+	public void startFeed(SyndFeed feed) {
+		try {
+			xmlWriter.writeStartDocument("UTF-8", "1.0");
+			switch (digestFeedFormat) {
+				case ATOM_1_0 -> writeAtomHeader(feed);
+				case RSS_2_0 -> writeRssHeader(feed);
+			}
+			flush();
+		}
+		catch (XMLStreamException | IOException e) {
+			throw new DigestFeedException(e);
+		}
+	}
+	
+	
+	@Override
+	public void writeEntry(byte[] entryFragment) {
+		try {
+			output.write(entryFragment);
+		}
+		catch (IOException e) {
+			throw new DigestFeedException(e);
+		}
+	}
+	
+	
+	@Override
+	public void endFeed() {
+		try {
+			if (digestFeedFormat == DigestFeedFormat.RSS_2_0)
+				xmlWriter.writeEndElement(); // channel
+			xmlWriter.writeEndElement();
+			xmlWriter.writeEndDocument();
+			flush();
+		}
+		catch (XMLStreamException | IOException e) {
+			throw new DigestFeedException(e);
+		}
+	}
+	
+	
+	private void writeRssHeader(SyndFeed feed) throws XMLStreamException {
+		xmlWriter.writeStartElement("rss");
+		xmlWriter.writeAttribute("version", "2.0");
+		xmlWriter.writeStartElement("channel");
+		writeTextElement("title", feed.getTitle());
+		writeTextElement("link", feed.getLink());
+		writeTextElement("description", feed.getDescription());
+		if (feed.getPublishedDate() != null)
+			writeTextElement("pubDate", formatDate(feed.getPublishedDate(), DateTimeFormatter.RFC_1123_DATE_TIME));
+		writeTextElement("generator", feed.getGenerator());
+	}
+	
+	
+	private void writeAtomHeader(SyndFeed feed) throws XMLStreamException {
+		xmlWriter.setDefaultNamespace(ATOM_NAMESPACE);
+		xmlWriter.writeStartElement(ATOM_NAMESPACE, "feed");
+		xmlWriter.writeDefaultNamespace(ATOM_NAMESPACE);
+		writeTextElement("title", feed.getTitle());
+		xmlWriter.writeEmptyElement(ATOM_NAMESPACE, "link");
+		xmlWriter.writeAttribute("rel", "alternate");
+		xmlWriter.writeAttribute("href", StringUtils.defaultString(feed.getLink()));
+		writeTextElement("subtitle", feed.getDescription());
+		writeTextElement("id", feed.getLink());
+		if (feed.getPublishedDate() != null)
+			writeTextElement("updated", formatDate(feed.getPublishedDate(), DateTimeFormatter.ISO_INSTANT));
+		writeTextElement("generator", feed.getGenerator());
+	}
+	
+	
+	private void writeTextElement(String name, String text) throws XMLStreamException {
+		if (digestFeedFormat == DigestFeedFormat.ATOM_1_0)
+			xmlWriter.writeStartElement(ATOM_NAMESPACE, name);
+		else
+			xmlWriter.writeStartElement(name);
+		xmlWriter.writeCharacters(StringUtils.defaultString(text));
+		xmlWriter.writeEndElement();
+	}
+	
+	
+	private void flush() throws XMLStreamException, IOException {
+		// Entry fragments are written directly to the output, so everything written before must reach it first
+		xmlWriter.flush();
+		writer.flush();
+	}
+	
+	
+	private static String formatDate(Date date, DateTimeFormatter formatter) {
+		return formatter.format(date.toInstant().atOffset(ZoneOffset.UTC));
+	}
+	
+}
@@ -1,5 +1,7 @@
 package io.bottomfeeder.filter;
 
+import java.util.Collection;
+
 import org.springframework.data.jpa.repository.Query;
 
 import io.bottomfeeder.digest.Digest;
@@ -20,4 +22,16 @@ public interface DigestEntryFilterRepository extends EntryFilterRepository<Diges
 	@Override
 	boolean isAssociatedEntityOwner(long entryFilterId, Long userId);
 	
+	
+	@Query("""
+			select 
+				count(digestEntryFilter) 
+			from 
+				DigestEntryFilter digestEntryFilter 
+			where 
+				digestEntryFilter.id in :entryFilterIds and :userId = digestEntryFilter.associatedEntity.owner.id
+		   """)
+	@Override
+	long countByAssociatedEntityOwner(Collection<Long> entryFilterIds, Long userId);
+	
 }
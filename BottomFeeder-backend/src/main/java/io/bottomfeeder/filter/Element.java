@@ -2,12 +2,12 @@ package io.bottomfeeder.filter;
 
 import static io.bottomfeeder.filter.ElementDataType.*;
 
+import java.util.AbstractList;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
 
-import com.rometools.rome.feed.synd.SyndCategory;
 import com.rometools.rome.feed.synd.SyndContent;
 import com.rometools.rome.feed.synd.SyndEntry;
 
@@ -27,7 +27,19 @@ public enum Element {
 	CATEGORIES (STRING_LIST) {
 		@Override
 		Object readValue(SyndEntry syndEntry) {
-			return syndEntry.getCategories().stream().map(SyndCategory::getName).collect(Collectors.toList());
+			// A view rather than a copy, since the value is only read by filters
+			var categories = syndEntry.getCategories();
+			return new AbstractList<String>() {
+				@Override
+				public String get(int index) {
+					return categories.get(index).getName();
+				}
+				
+				@Override
+				public int size() {
+					return categories.size();
+				}
+			};
 		}
 	},
 	CONTENT (STRING) {
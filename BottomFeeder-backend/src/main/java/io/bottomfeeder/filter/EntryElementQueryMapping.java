@@ -0,0 +1,47 @@
+package io.bottomfeeder.filter;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+/**
+ * Maps entry elements to query expressions over stored entries of type {@code T}, allowing entry 
+ * filters to be translated into query predicates.
+ * 
+ * @param <T> the type of stored entry entity
+ */
+public interface EntryElementQueryMapping<T> {
+
+	/**
+	 * Returns expression that yields stored value of the element. Types of expressions must match 
+	 * element data types: string for {@code STRING}, newline-separated string for {@code STRING_LIST}
+	 * and {@code Instant} for {@code DATE_TIME}.
+	 */
+	Expression<?> getElementValue(Root<T> root, CriteriaBuilder criteriaBuilder, Element element);
+	
+	
+	/**
+	 * Returns expression that yields stored value of the string or string list element, case-folded
+	 * at ingest by {@link #foldCase(String)}. Folded value must be null if stored value is null. Entries 
+	 * that have stored value but no folded value must not be reported as having exact element value.
+	 */
+	Expression<String> getFoldedElementValue(Root<T> root, CriteriaBuilder criteriaBuilder, Element element);
+	
+	
+	/**
+	 * Returns predicate that is true for entries whose stored value of the element is exact 
+	 * (i.e. present and not truncated). The predicate must never evaluate to unknown.
+	 */
+	Predicate hasExactElementValue(Root<T> root, CriteriaBuilder criteriaBuilder, Element element);
+	
+	
+	/**
+	 * Case-folds string value the same way as entry filters do when comparing strings ignoring case.
+	 * Returns {@code null} for {@code null} value.
+	 */
+	static String foldCase(String value) {
+		return value != null ? EntryFilterChain.foldCase(value) : null;
+	}
+	
+}
@@ -0,0 +1,326 @@
+package io.bottomfeeder.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * A compiled chain of entry filters, evaluated against filterable entries.
+ * 
+ * The chain is built once from a list of entry filters and is immutable afterwards. Compilation resolves
+ * condition for each filter, parses date/time filter values and case-folds string filter values, so that 
+ * evaluation performs no parsing or lookups. Filters are composed left-to-right, the same way as 
+ * {@code Connective.compose} does, with short-circuit evaluation. Each element value is obtained from 
+ * the entry at most once per evaluation, even if several filters reference the same element.
+ * 
+ * Contains and does-not-contain filters on the same string element are answered together by 
+ * a multi-pattern matcher, so that element value is scanned once regardless of the number of such filters.
+ * 
+ * The chain also retains the definition of its filters, so that it can be translated into query 
+ * without reading filters again.
+ */
+final class EntryFilterChain implements Predicate<FilterableEntry> {
+
+	private static final Object NOT_LOADED = new Object();
+	
+	private final Element[] elements;
+	private final int[] elementSlots;
+	private final DataTypeCondition[] dataTypeConditions;
+	private final String[] filterValues;
+	private final CompiledCondition[] conditions;
+	private final Connective[] connectives;
+	private final int slotCount;
+	
+	// Multi-pattern matchers by element slot, and pattern index of each filter answered by matcher (or -1)
+	private final MultiPatternMatcher[] matchers;
+	private final int[] patternIndexes;
+	
+	// Per-thread buffer for retained element values, present only when some element is referenced 
+	// by more than one filter. Element values are followed by multi-pattern match results for the same elements,
+	// and then by bit sets that hold match results of each matcher, reused across evaluations.
+	private final ThreadLocal<Object[]> retainedValues;
+	
+	
+	private EntryFilterChain(List<? extends EntryFilter<?>> entryFilters) {
+		var size = entryFilters.size();
+		elements = new Element[size];
+		elementSlots = new int[size];
+		dataTypeConditions = new DataTypeCondition[size];
+		filterValues = new String[size];
+		conditions = new CompiledCondition[size];
+		connectives = new Connective[size];
+		
+		var slotElements = new Element[size];
+		var slots = 0;
+		for (int i = 0; i < size; i++) {
+			var entryFilter = entryFilters.get(i);
+			var element = entryFilter.getElement();
+			elements[i] = element;
+			dataTypeConditions[i] = DataTypeCondition.of(element.dataType(), entryFilter.getCondition());
+			filterValues[i] = entryFilter.getValue();
+			conditions[i] = compile(dataTypeConditions[i], filterValues[i]);
+			connectives[i] = entryFilter.getConnective();
+			
+			var slot = 0;
+			while (slot < slots && slotElements[slot] != element)
+				slot++;
+			if (slot == slots)
+				slotElements[slots++] = element;
+			elementSlots[i] = slot;
+		}
+		slotCount = slots;
+		retainedValues = slotCount < size ? ThreadLocal.withInitial(this::newRetainedValues) : null;
+		
+		matchers = new MultiPatternMatcher[slotCount];
+		patternIndexes = new int[size];
+		Arrays.fill(patternIndexes, -1);
+		for (int slot = 0; slot < slotCount; slot++) {
+			var patterns = new ArrayList<String>();
+			for (int i = 0; i < size; i++) {
+				if (elementSlots[i] == slot && isContainsCondition(dataTypeConditions[i])) {
+					patternIndexes[i] = patterns.size();
+					patterns.add(filterValues[i]);
+				}
+			}
+			
+			// Single filter is answered by plain search
+			if (patterns.size() > 1) {
+				matchers[slot] = new MultiPatternMatcher(patterns);
+			}
+			else {
+				for (int i = 0; i < size; i++) {
+					if (elementSlots[i] == slot)
+						patternIndexes[i] = -1;
+				}
+			}
+		}
+	}
+	
+	
+	/**
+	 * Compiles a list of entry filters into a filter chain.
+	 * 
+	 * @param entryFilters the list of entry filters
+	 * @return filter chain, or {@code null} if filter list is empty
+	 */
+	static EntryFilterChain compile(List<? extends EntryFilter<?>> entryFilters) {
+		return entryFilters.isEmpty() ? null : new EntryFilterChain(entryFilters);
+	}
+	
+	
+	int size() {
+		return elements.length;
+	}
+	
+	
+	Element element(int index) {
+		return elements[index];
+	}
+	
+	
+	DataTypeCondition dataTypeCondition(int index) {
+		return dataTypeConditions[index];
+	}
+	
+	
+	String filterValue(int index) {
+		return filterValues[index];
+	}
+	
+	
+	/**
+	 * Returns connective joining filter at the specified index with the next one.
+	 */
+	Connective connective(int index) {
+		return connectives[index];
+	}
+	
+	
+	@Override
+	public boolean test(FilterableEntry filterableEntry) {
+		if (filterableEntry == null)
+			return false;
+		
+		var values = retainedValues != null ? retainedValues.get() : null;
+		try {
+			var result = evaluate(0, filterableEntry, values);
+			for (int i = 1; i < conditions.length; i++) {
+				result = switch (connectives[i - 1]) {
+					case AND -> result && evaluate(i, filterableEntry, values);
+					case OR -> result || evaluate(i, filterableEntry, values);
+				};
+			}
+			return result;
+		}
+		finally {
+			// Reset for the next evaluation, also releasing values of this entry
+			if (values != null)
+				Arrays.fill(values, 0, slotCount * 2, NOT_LOADED);
+		}
+	}
+	
+	
+	private Object[] newRetainedValues() {
+		var values = new Object[slotCount * 3];
+		Arrays.fill(values, 0, slotCount * 2, NOT_LOADED);
+		for (int slot = 0; slot < slotCount; slot++) {
+			if (matchers[slot] != null)
+				values[slotCount * 2 + slot] = matchers[slot].newMatches();
+		}
+		return values;
+	}
+	
+	
+	private boolean evaluate(int index, FilterableEntry filterableEntry, Object[] values) {
+		if (values == null)
+			return conditions[index].test(filterableEntry.getElementValue(elements[index]));
+		
+		var slot = elementSlots[index];
+		var patternIndex = patternIndexes[index];
+		if (patternIndex >= 0) {
+			var matches = (long[])values[slotCount * 2 + slot];
+			if (values[slotCount + slot] == NOT_LOADED) {
+				matchers[slot].match((String)getValue(slot, index, filterableEntry, values), matches);
+				values[slotCount + slot] = matches;
+			}
+			var found = MultiPatternMatcher.isMatched(matches, patternIndex);
+			return dataTypeConditions[index] == DataTypeCondition.STRING_CONTAINS ? found : !found;
+		}
+		else {
+			return conditions[index].test(getValue(slot, index, filterableEntry, values));
+		}
+	}
+	
+	
+	private Object getValue(int slot, int index, FilterableEntry filterableEntry, Object[] values) {
+		var value = values[slot];
+		if (value == NOT_LOADED)
+			value = values[slot] = filterableEntry.getElementValue(elements[index]);
+		return value;
+	}
+	
+	
+	private static boolean isContainsCondition(DataTypeCondition dataTypeCondition) {
+		return dataTypeCondition == DataTypeCondition.STRING_CONTAINS 
+				|| dataTypeCondition == DataTypeCondition.STRING_DOES_NOT_CONTAIN;
+	}
+	
+	
+	private static CompiledCondition compile(DataTypeCondition dataTypeCondition, String filterValue) {
+		// Semantics must match condition evaluators in ConditionEvaluator
+		return switch (dataTypeCondition) {
+			case STRING_CONTAINS -> {
+				var needle = foldCase(filterValue);
+				yield value -> containsFolded((String)value, needle);
+			}
+			case STRING_DOES_NOT_CONTAIN -> {
+				var needle = foldCase(filterValue);
+				yield value -> !containsFolded((String)value, needle);
+			}
+			case STRING_EQUALS -> {
+				var needle = foldCase(filterValue);
+				yield value -> equalsFolded((String)value, needle);
+			}
+			case STRING_DOES_NOT_EQUAL -> {
+				var needle = foldCase(filterValue);
+				yield value -> !equalsFolded((String)value, needle);
+			}
+			case STRING_LIST_CONTAINS -> {
+				var needle = foldCase(filterValue);
+				yield value -> listContainsFolded(value, needle);
+			}
+			case STRING_LIST_DOES_NOT_CONTAIN -> {
+				var needle = foldCase(filterValue);
+				yield value -> !listContainsFolded(value, needle);
+			}
+			case DATE_TIME_EQUALS -> {
+				var instant = DateTimeUtils.parseAsInstant(filterValue);
+				yield value -> DateTimeUtils.isEqual(DateTimeUtils.castAsInstant(value), instant);
+			}
+			case DATE_TIME_DOES_NOT_EQUAL -> {
+				var instant = DateTimeUtils.parseAsInstant(filterValue);
+				yield value -> !DateTimeUtils.isEqual(DateTimeUtils.castAsInstant(value), instant);
+			}
+			case DATE_TIME_LESS_THAN -> {
+				var instant = DateTimeUtils.parseAsInstant(filterValue);
+				yield value -> DateTimeUtils.isBefore(DateTimeUtils.castAsInstant(value), instant);
+			}
+			case DATE_TIME_MORE_THAN -> {
+				var instant = DateTimeUtils.parseAsInstant(filterValue);
+				yield value -> DateTimeUtils.isAfter(DateTimeUtils.castAsInstant(value), instant);
+			}
+		};
+	}
+	
+	
+	/*
+	 * Case folding used for comparisons. Two chars are considered equal ignoring case by 
+	 * String.regionMatches (and therefore by StringUtils.*IgnoreCase methods) if and only if 
+	 * their folded forms are equal.
+	 */
+	static char foldCase(char c) {
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+	
+	
+	static String foldCase(String value) {
+		var chars = value.toCharArray();
+		for (int i = 0; i < chars.length; i++)
+			chars[i] = foldCase(chars[i]);
+		return new String(chars);
+	}
+	
+	
+	private static boolean containsFolded(String value, String foldedNeedle) {
+		if (value == null)
+			return false;
+		
+		var lastStart = value.length() - foldedNeedle.length();
+		for (int start = 0; start <= lastStart; start++) {
+			if (regionMatchesFolded(value, start, foldedNeedle))
+				return true;
+		}
+		return false;
+	}
+	
+	
+	private static boolean equalsFolded(String value, String foldedNeedle) {
+		return value != null && value.length() == foldedNeedle.length() && regionMatchesFolded(value, 0, foldedNeedle);
+	}
+	
+	
+	private static boolean listContainsFolded(Object value, String foldedNeedle) {
+		if (value == null)
+			return false;
+		
+		@SuppressWarnings("unchecked")
+		var list = (List<String>)value;
+		for (var item : list) {
+			if (equalsFolded(item, foldedNeedle))
+				return true;
+		}
+		return false;
+	}
+	
+	
+	private static boolean regionMatchesFolded(String value, int start, String foldedNeedle) {
+		for (int i = 0; i < foldedNeedle.length(); i++) {
+			if (foldCase(value.charAt(start + i)) != foldedNeedle.charAt(i))
+				return false;
+		}
+		return true;
+	}
+	
+	
+	/**
+	 * Condition with filter value bound at compile time.
+	 */
+	@FunctionalInterface
+	private interface CompiledCondition {
+		
+		boolean test(Object elementValue);
+		
+	}
+	
+}
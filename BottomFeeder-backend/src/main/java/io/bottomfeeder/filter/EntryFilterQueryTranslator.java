@@ -0,0 +1,159 @@
+package io.bottomfeeder.filter;
+
+import java.time.Instant;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Translates entry filter chains into query specifications.
+ * 
+ * Resulting specification selects a superset of entries that pass the filter chain, so the chain 
+ * still has to be evaluated on selected entries. This is because each filter is only translated
+ * for entries with exact stored element value, while other entries are always selected. Since filters
+ * are composed by conjunction and disjunction only, the superset property holds for the whole chain.
+ * 
+ * String conditions are evaluated against stored values case-folded at ingest, with filter values folded 
+ * the same way, so that the query compares folded values as they are and doesn't depend on case conversion 
+ * of the database, which may differ from that of filter chain for non-ASCII characters. This requires
+ * database collation to compare strings by their characters, which is the case for default collations 
+ * of supported databases. Filters whose condition cannot be reproduced in query reliably are translated 
+ * into predicates that select all entries.
+ */
+final class EntryFilterQueryTranslator {
+
+	private static final char LIKE_ESCAPE_CHAR = '\\';
+	private static final String CATEGORY_SEPARATOR = "\n";
+	
+	private EntryFilterQueryTranslator() {}
+	
+	
+	static <T> Specification<T> translate(EntryFilterChain entryFilterChain, EntryElementQueryMapping<T> mapping) {
+		if (entryFilterChain == null)
+			return null;
+		
+		return (root, query, criteriaBuilder) -> {
+			var predicate = translate(entryFilterChain, 0, root, criteriaBuilder, mapping);
+			for (int i = 1; i < entryFilterChain.size(); i++) {
+				var nextPredicate = translate(entryFilterChain, i, root, criteriaBuilder, mapping);
+				predicate = switch (entryFilterChain.connective(i - 1)) {
+					case AND -> criteriaBuilder.and(predicate, nextPredicate);
+					case OR -> criteriaBuilder.or(predicate, nextPredicate);
+				};
+			}
+			return predicate;
+		};
+	}
+	
+	
+	private static <T> Predicate translate(EntryFilterChain entryFilterChain, int index, Root<T> root, 
+			CriteriaBuilder criteriaBuilder, EntryElementQueryMapping<T> mapping) {
+		var element = entryFilterChain.element(index);
+		var value = element.dataType() == ElementDataType.DATE_TIME 
+				? mapping.getElementValue(root, criteriaBuilder, element) 
+				: mapping.getFoldedElementValue(root, criteriaBuilder, element);
+		
+		var condition = translate(entryFilterChain.dataTypeCondition(index), value, 
+				entryFilterChain.filterValue(index), criteriaBuilder);
+		if (condition == null)
+			return criteriaBuilder.conjunction();
+		
+		var hasExactValue = mapping.hasExactElementValue(root, criteriaBuilder, element);
+		return criteriaBuilder.or(criteriaBuilder.and(hasExactValue, condition), criteriaBuilder.not(hasExactValue));
+	}
+	
+	
+	@SuppressWarnings("unchecked")
+	private static Predicate translate(DataTypeCondition dataTypeCondition, Expression<?> value, String filterValue,
+			CriteriaBuilder criteriaBuilder) {
+		// Null values are handled the same way condition evaluators do
+		return switch (dataTypeCondition) {
+			case STRING_CONTAINS -> 
+				isTranslatable(filterValue) ? containsFolded((Expression<String>)value, filterValue, criteriaBuilder) : null;
+			case STRING_DOES_NOT_CONTAIN -> 
+				isTranslatable(filterValue) ? criteriaBuilder.or(criteriaBuilder.isNull(value), 
+						criteriaBuilder.not(containsFolded((Expression<String>)value, filterValue, criteriaBuilder))) : null;
+			case STRING_EQUALS -> 
+				isTranslatable(filterValue) ? equalsFolded((Expression<String>)value, filterValue, criteriaBuilder) : null;
+			case STRING_DOES_NOT_EQUAL -> 
+				isTranslatable(filterValue) ? criteriaBuilder.or(criteriaBuilder.isNull(value), 
+						criteriaBuilder.not(equalsFolded((Expression<String>)value, filterValue, criteriaBuilder))) : null;
+			case STRING_LIST_CONTAINS -> 
+				isTranslatableListItem(filterValue) 
+						? listContainsFolded((Expression<String>)value, filterValue, criteriaBuilder) : null;
+			case STRING_LIST_DOES_NOT_CONTAIN -> 
+				isTranslatableListItem(filterValue) ? criteriaBuilder.or(criteriaBuilder.isNull(value), 
+						criteriaBuilder.not(listContainsFolded((Expression<String>)value, filterValue, criteriaBuilder))) : null;
+			case DATE_TIME_EQUALS -> 
+				criteriaBuilder.equal(value, DateTimeUtils.parseAsInstant(filterValue));
+			case DATE_TIME_DOES_NOT_EQUAL -> 
+				criteriaBuilder.or(criteriaBuilder.isNull(value), 
+						criteriaBuilder.notEqual(value, DateTimeUtils.parseAsInstant(filterValue)));
+			case DATE_TIME_LESS_THAN -> 
+				criteriaBuilder.lessThan((Expression<Instant>)value, DateTimeUtils.parseAsInstant(filterValue));
+			case DATE_TIME_MORE_THAN -> 
+				criteriaBuilder.greaterThan((Expression<Instant>)value, DateTimeUtils.parseAsInstant(filterValue));
+		};
+	}
+	
+	
+	private static Predicate containsFolded(Expression<String> foldedValue, String filterValue, 
+			CriteriaBuilder criteriaBuilder) {
+		return criteriaBuilder.like(foldedValue, "%" + escapeLikePattern(EntryFilterChain.foldCase(filterValue)) + "%", 
+				LIKE_ESCAPE_CHAR);
+	}
+	
+	
+	private static Predicate equalsFolded(Expression<String> foldedValue, String filterValue, 
+			CriteriaBuilder criteriaBuilder) {
+		return criteriaBuilder.equal(foldedValue, EntryFilterChain.foldCase(filterValue));
+	}
+	
+	
+	private static Predicate listContainsFolded(Expression<String> foldedValue, String filterValue, 
+			CriteriaBuilder criteriaBuilder) {
+		// Looks for the value enclosed in separators within separator-enclosed joined list
+		var enclosedList = criteriaBuilder.concat(criteriaBuilder.concat(CATEGORY_SEPARATOR, foldedValue), 
+				CATEGORY_SEPARATOR);
+		var pattern = "%" + CATEGORY_SEPARATOR + escapeLikePattern(EntryFilterChain.foldCase(filterValue)) 
+				+ CATEGORY_SEPARATOR + "%";
+		return criteriaBuilder.like(enclosedList, pattern, LIKE_ESCAPE_CHAR);
+	}
+	
+	
+	private static String escapeLikePattern(String value) {
+		var builder = new StringBuilder(value.length() + 8);
+		for (int i = 0; i < value.length(); i++) {
+			var c = value.charAt(i);
+			if (c == LIKE_ESCAPE_CHAR || c == '%' || c == '_')
+				builder.append(LIKE_ESCAPE_CHAR);
+			builder.append(c);
+		}
+		return builder.toString();
+	}
+	
+	
+	private static boolean isTranslatable(String value) {
+		// Filter chain compares chars, while database compares code points, which is the same
+		// unless the value has a surrogate char that is not a part of a pair
+		for (int i = 0; i < value.length(); i++) {
+			var c = value.charAt(i);
+			if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1)))
+				i++;
+			else if (Character.isSurrogate(c))
+				return false;
+		}
+		return true;
+	}
+	
+	
+	private static boolean isTranslatableListItem(String value) {
+		// Value containing separator never equals a list item, but may match across items in joined list
+		return isTranslatable(value) && !value.contains(CATEGORY_SEPARATOR);
+	}
+	
+}
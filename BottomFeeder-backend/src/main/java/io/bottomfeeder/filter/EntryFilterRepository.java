@@ -1,5 +1,6 @@
 package io.bottomfeeder.filter;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
@@ -38,4 +39,10 @@ public interface EntryFilterRepository<T extends EntryFilter<E>, E> extends JpaR
 	
 	boolean isAssociatedEntityOwner(long entryFilterId, Long userId);
 	
+	
+	/**
+	 * Counts entry filters among the specified ones whose associated entity is owned by the specified user.
+	 */
+	long countByAssociatedEntityOwner(Collection<Long> entryFilterIds, Long userId);
+	
 }
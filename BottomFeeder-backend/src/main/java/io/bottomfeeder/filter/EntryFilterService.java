@@ -4,6 +4,7 @@ import static java.lang.String.format;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
@@ -11,35 +12,85 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-
-import com.rometools.rome.feed.synd.SyndEntry;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import io.bottomfeeder.digest.Digest;
+import io.bottomfeeder.digest.DigestChangeEvent;
 import io.bottomfeeder.filter.model.EntryFilterList;
 import io.bottomfeeder.filter.model.EntryFilterModel;
 import io.bottomfeeder.sourcefeed.SourceFeed;
+import io.bottomfeeder.sourcefeed.SourceFeedRepository;
+import io.bottomfeeder.util.TimedCache;
+import io.bottomfeeder.util.TimedCacheMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
 /**
  * A service providing common functionality for working with entry filters.
+ * 
+ * Compiled filter chains are cached per digest and per source feed. Cached chains are invalidated 
+ * whenever filters of associated entity are updated or deleted.
+ * 
+ * Evaluation time of filter chains is recorded per evaluated entry, separately for digests and source feeds.
+ * Only a sample of evaluations is timed, as timing every one of them would cost a noticeable part
+ * of the evaluation itself.
  */
 @Service
 public class EntryFilterService {
 
+	private static final int EVALUATION_TIMING_SAMPLE_RATE = 64;
+	
 	private final DigestEntryFilterRepository digestEntryFilterRepository;
 	private final SourceFeedEntryFilterRepository sourceFeedEntryFilterRepository;
+	private final SourceFeedRepository sourceFeedRepository;
+	private final ApplicationEventPublisher eventPublisher;
+	private final FilterChainCache digestFilterChainCache;
+	private final FilterChainCache sourceFeedFilterChainCache;
+	private final Timer digestFilterEvaluationTimer;
+	private final Timer sourceFeedFilterEvaluationTimer;
 	
 	
 	public EntryFilterService(
 			DigestEntryFilterRepository digestEntryFilterRepository,
-			SourceFeedEntryFilterRepository sourceFeedEntryFilterRepository) {
+			SourceFeedEntryFilterRepository sourceFeedEntryFilterRepository,
+			SourceFeedRepository sourceFeedRepository,
+			ApplicationEventPublisher eventPublisher,
+			@Value("${bf.filter-chain-cache.max-size:1000}") int cacheMaxSize,
+			@Value("${bf.filter-chain-cache.ttl-minutes:60}") long cacheTimeToLiveMinutes,
+			MeterRegistry meterRegistry) {
 		this.digestEntryFilterRepository = digestEntryFilterRepository;
 		this.sourceFeedEntryFilterRepository = sourceFeedEntryFilterRepository;
+		this.sourceFeedRepository = sourceFeedRepository;
+		this.eventPublisher = eventPublisher;
+		this.digestFilterChainCache = new FilterChainCache(cacheMaxSize, Duration.ofMinutes(cacheTimeToLiveMinutes));
+		this.sourceFeedFilterChainCache = new FilterChainCache(cacheMaxSize, Duration.ofMinutes(cacheTimeToLiveMinutes));
+		this.digestFilterEvaluationTimer = filterEvaluationTimer("digest", meterRegistry);
+		this.sourceFeedFilterEvaluationTimer = filterEvaluationTimer("source-feed", meterRegistry);
+		
+		new TimedCacheMetrics("digest-filter-chain", digestFilterChainCache::getStats).bindTo(meterRegistry);
+		new TimedCacheMetrics("source-feed-filter-chain", sourceFeedFilterChainCache::getStats).bindTo(meterRegistry);
+	}
+	
+	
+	private static Timer filterEvaluationTimer(String target, MeterRegistry meterRegistry) {
+		return Timer.builder("bf.filter.evaluation")
+				.tag("target", target)
+				.description(format("Time spent evaluating entry filter chain against an entry, "
+						+ "sampled for 1 in %d entries", EVALUATION_TIMING_SAMPLE_RATE))
+				.register(meterRegistry);
 	}
 	
 	
@@ -51,8 +102,11 @@ public class EntryFilterService {
 	@Transactional
 	public List<DigestEntryFilter> updateDigestEntryFilters(
 			EntryFilterList<DigestEntryFilter, Digest> filterList, Digest digest) {
-		return processFilterList(filterList, digestEntryFilterRepository, Objects.requireNonNull(digest), 
+		var updatedFilters = processFilterList(filterList, digestEntryFilterRepository, Objects.requireNonNull(digest), 
 				DigestEntryFilter::new);
+		digestFilterChainCache.invalidateOnCommit(digest.getId());
+		eventPublisher.publishEvent(new DigestChangeEvent(digest, true));
+		return updatedFilters;
 	}
 
 	
@@ -64,18 +118,24 @@ public class EntryFilterService {
 	@Transactional
 	public List<SourceFeedEntryFilter> updateSourceFeedEntryFilters(
 			EntryFilterList<SourceFeedEntryFilter, SourceFeed> filterList, SourceFeed sourceFeed) {
-		return processFilterList(filterList, sourceFeedEntryFilterRepository, Objects.requireNonNull(sourceFeed), 
-				SourceFeedEntryFilter::new);
+		var updatedFilters = processFilterList(filterList, sourceFeedEntryFilterRepository, 
+				Objects.requireNonNull(sourceFeed), SourceFeedEntryFilter::new);
+		// Source feed entries must be refiltered on next update even if content is not modified
+		sourceFeedRepository.registerEntrySettingsChange(sourceFeed.getId());
+		sourceFeedFilterChainCache.invalidateOnCommit(sourceFeed.getId());
+		return updatedFilters;
 	}
 	
 	
 	public void deleteDigestEntryFilters(long digetstId) {
 		digestEntryFilterRepository.deleteByAssociatedEntityId(digetstId);
+		digestFilterChainCache.invalidateOnCommit(digetstId);
 	}
 	
 	
 	public void deleteSourceFeedEntryFilters(long sourceFeedId) {
 		sourceFeedEntryFilterRepository.deleteByAssociatedEntityId(sourceFeedId);
+		sourceFeedFilterChainCache.invalidateOnCommit(sourceFeedId);
 	}
 	
 	
@@ -199,44 +259,113 @@ public class EntryFilterService {
 	}
 
 	
-	public Predicate<SyndEntry> getDigestEntryFilterChain(Digest digest) {
-		return createEntryFilterChain(getDigestEntryFilters(digest));
+	public Predicate<FilterableEntry> getDigestEntryFilterChain(Digest digest) {
+		return timed(getCompiledDigestEntryFilterChain(digest), digestFilterEvaluationTimer);
 	}
 	
 	
-	public Predicate<SyndEntry> getSourceFeedEntryFilterChain(SourceFeed sourceFeed) {
-		return createEntryFilterChain(getSourceFeedEntryFilters(sourceFeed));
+	public <T> Specification<T> getDigestEntryFilterSpecification(Digest digest, EntryElementQueryMapping<T> mapping) {
+		return EntryFilterQueryTranslator.translate(getCompiledDigestEntryFilterChain(digest), mapping);
 	}
-
 	
-	private static Predicate<SyndEntry> createEntryFilterChain(List<? extends EntryFilter<?>> entryFilters) {
-		if (entryFilters.isEmpty()) {
+	
+	public Predicate<FilterableEntry> getSourceFeedEntryFilterChain(SourceFeed sourceFeed) {
+		return timed(sourceFeedFilterChainCache.get(sourceFeed.getId(), () -> getSourceFeedEntryFilters(sourceFeed)), 
+				sourceFeedFilterEvaluationTimer);
+	}
+	
+	
+	/**
+	 * Compiles filter chain of source feed bypassing the cache, for callers that must see filters 
+	 * committed right before the call, when cached chain might not be invalidated yet.
+	 */
+	public Predicate<FilterableEntry> loadSourceFeedEntryFilterChain(SourceFeed sourceFeed) {
+		return timed(EntryFilterChain.compile(getSourceFeedEntryFilters(sourceFeed)), sourceFeedFilterEvaluationTimer);
+	}
+	
+	
+	private static Predicate<FilterableEntry> timed(EntryFilterChain filterChain, Timer timer) {
+		if (filterChain == null)
 			return null;
-		}
-		else {
-			var filterChain = createPredicate(entryFilters.get(0));
-			if (entryFilters.size() > 1) {
-				for (int i = 1; i < entryFilters.size(); i++) {
-					var connective = entryFilters.get(i - 1).getConnective();
-					filterChain = connective.compose(filterChain, createPredicate(entryFilters.get(i)));
-				}
+		
+		return filterableEntry -> {
+			if (ThreadLocalRandom.current().nextInt(EVALUATION_TIMING_SAMPLE_RATE) != 0)
+				return filterChain.test(filterableEntry);
+			
+			var startTime = System.nanoTime();
+			try {
+				return filterChain.test(filterableEntry);
 			}
-			return filterChain;
-		}
+			finally {
+				timer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+			}
+		};
 	}
 	
 	
-	private static Predicate<SyndEntry> createPredicate(EntryFilter<?> entryFilter) {
-		return syndEntry -> {
-			if (syndEntry == null) {
-				return false;
+	private EntryFilterChain getCompiledDigestEntryFilterChain(Digest digest) {
+		return digestFilterChainCache.get(digest.getId(), () -> getDigestEntryFilters(digest));
+	}
+	
+	
+	/**
+	 * Cache of compiled filter chains keyed by ID of associated entity. 
+	 * Absence of filters is cached too, as an empty optional.
+	 */
+	private static final class FilterChainCache {
+		
+		private final TimedCache<Long, Optional<EntryFilterChain>> cache;
+		
+		// Guarded by this
+		private long invalidationCount;
+		
+		FilterChainCache(int maxSize, Duration timeToLive) {
+			this.cache = new TimedCache<>(maxSize, timeToLive);
+		}
+		
+		EntryFilterChain get(Long entityId, Supplier<List<? extends EntryFilter<?>>> entryFiltersLoader) {
+			var filterChain = cache.get(entityId);
+			if (filterChain == null) {
+				long invalidationCountBefore;
+				synchronized (this) {
+					invalidationCountBefore = invalidationCount;
+				}
+				
+				filterChain = Optional.ofNullable(EntryFilterChain.compile(entryFiltersLoader.get()));
+				
+				synchronized (this) {
+					// Chain compiled concurrently with invalidation might be stale, so it's not cached
+					if (invalidationCount == invalidationCountBefore)
+						cache.put(entityId, filterChain);
+				}
 			}
-			else {
-				var element = entryFilter.getElement();
-				var evaluator = DataTypeCondition.of(element.dataType(), entryFilter.getCondition()).conditionEvaluator();
-				return evaluator.evaluate(element.readValue(syndEntry), entryFilter.getValue());
+			return filterChain.orElse(null);
+		}
+		
+		/**
+		 * Invalidates cached chain immediately, and once again after the current transaction completes,
+		 * since chain compiled from filters read before the transaction completes might have been cached meanwhile.
+		 */
+		void invalidateOnCommit(Long entityId) {
+			invalidate(entityId);
+			if (TransactionSynchronizationManager.isSynchronizationActive()) {
+				TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+					@Override
+					public void afterCompletion(int status) {
+						invalidate(entityId);
+					}
+				});
 			}
-		};
+		}
+		
+		synchronized void invalidate(Long entityId) {
+			invalidationCount++;
+			cache.invalidate(entityId);
+		}
+		
+		TimedCache.Stats getStats() {
+			return cache.getStats();
+		}
 	}
 	
 }
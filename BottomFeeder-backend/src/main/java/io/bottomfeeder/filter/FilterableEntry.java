@@ -0,0 +1,24 @@
+package io.bottomfeeder.filter;
+
+import com.rometools.rome.feed.synd.SyndEntry;
+
+/**
+ * Represents a feed entry that entry filters can be evaluated against, providing 
+ * values of its generic elements.
+ * 
+ * Values must be of the same types as those read by {@code Element} from SyndEntry.
+ */
+@FunctionalInterface
+public interface FilterableEntry {
+
+	Object getElementValue(Element element);
+	
+	
+	/**
+	 * Creates filterable view of the specified SyndEntry that reads element values directly from it.
+	 */
+	static FilterableEntry of(SyndEntry syndEntry) {
+		return syndEntry != null ? element -> element.readValue(syndEntry) : null;
+	}
+	
+}
@@ -0,0 +1,194 @@
+package io.bottomfeeder.filter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds which of the given patterns occur in a string as substrings, ignoring case, using 
+ * a single pass over the string (Aho-Corasick automaton).
+ * 
+ * Chars are compared by their folded form (see {@code EntryFilterChain.foldCase}), so the result 
+ * for each pattern is the same as the one of {@code StringUtils.containsIgnoreCase}.
+ */
+final class MultiPatternMatcher {
+
+	private static final int ROOT = 0;
+	
+	private final int patternCount;
+	
+	// Goto function: sorted transition chars of each node and corresponding target nodes
+	private final char[][] transitionChars;
+	private final int[][] transitionTargets;
+	private final int[] failureLinks;
+	
+	// Bit sets of patterns ending at each node, including patterns reachable via failure links
+	private final long[][] outputs;
+	
+	// Bit set of empty patterns, which occur in any string
+	private final long[] emptyPatterns;
+	
+	
+	MultiPatternMatcher(List<String> patterns) {
+		patternCount = patterns.size();
+		var words = wordCount(patternCount);
+		emptyPatterns = new long[words];
+		
+		// Build trie of folded patterns
+		var nodeChars = new ArrayList<StringBuilder>();
+		var nodeTargets = new ArrayList<List<Integer>>();
+		var nodeOutputs = new ArrayList<long[]>();
+		nodeChars.add(new StringBuilder());
+		nodeTargets.add(new ArrayList<>());
+		nodeOutputs.add(null);
+		for (int patternIndex = 0; patternIndex < patternCount; patternIndex++) {
+			var pattern = patterns.get(patternIndex);
+			if (pattern.isEmpty()) {
+				setBit(emptyPatterns, patternIndex);
+				continue;
+			}
+			
+			var node = ROOT;
+			for (int i = 0; i < pattern.length(); i++) {
+				var c = EntryFilterChain.foldCase(pattern.charAt(i));
+				var charIndex = nodeChars.get(node).indexOf(String.valueOf(c));
+				if (charIndex >= 0) {
+					node = nodeTargets.get(node).get(charIndex);
+				}
+				else {
+					var newNode = nodeChars.size();
+					nodeChars.add(new StringBuilder());
+					nodeTargets.add(new ArrayList<>());
+					nodeOutputs.add(null);
+					nodeChars.get(node).append(c);
+					nodeTargets.get(node).add(newNode);
+					node = newNode;
+				}
+			}
+			if (nodeOutputs.get(node) == null)
+				nodeOutputs.set(node, new long[words]);
+			setBit(nodeOutputs.get(node), patternIndex);
+		}
+		
+		var nodeCount = nodeChars.size();
+		transitionChars = new char[nodeCount][];
+		transitionTargets = new int[nodeCount][];
+		for (int node = 0; node < nodeCount; node++) {
+			var chars = nodeChars.get(node).toString().toCharArray();
+			var targets = nodeTargets.get(node);
+			var order = new Integer[chars.length];
+			for (int i = 0; i < order.length; i++)
+				order[i] = i;
+			Arrays.sort(order, (i1, i2) -> Character.compare(chars[i1], chars[i2]));
+			
+			transitionChars[node] = new char[chars.length];
+			transitionTargets[node] = new int[chars.length];
+			for (int i = 0; i < order.length; i++) {
+				transitionChars[node][i] = chars[order[i]];
+				transitionTargets[node][i] = targets.get(order[i]);
+			}
+		}
+		
+		// Compute failure links and merge outputs in breadth-first order
+		failureLinks = new int[nodeCount];
+		outputs = nodeOutputs.toArray(new long[nodeCount][]);
+		var queue = new ArrayDeque<Integer>();
+		for (var target : transitionTargets[ROOT]) {
+			failureLinks[target] = ROOT;
+			queue.add(target);
+		}
+		while (!queue.isEmpty()) {
+			int node = queue.poll();
+			for (int i = 0; i < transitionChars[node].length; i++) {
+				var c = transitionChars[node][i];
+				var target = transitionTargets[node][i];
+				
+				var failure = failureLinks[node];
+				var failureTarget = transition(failure, c);
+				while (failureTarget < 0 && failure != ROOT) {
+					failure = failureLinks[failure];
+					failureTarget = transition(failure, c);
+				}
+				failureLinks[target] = failureTarget >= 0 ? failureTarget : ROOT;
+				
+				var failureOutput = outputs[failureLinks[target]];
+				if (failureOutput != null) {
+					if (outputs[target] == null)
+						outputs[target] = failureOutput;
+					else
+						outputs[target] = union(outputs[target], failureOutput);
+				}
+				queue.add(target);
+			}
+		}
+	}
+	
+	
+	/**
+	 * Creates bit set to be filled by {@link #match(String, long[])}, which can be reused across matches.
+	 */
+	long[] newMatches() {
+		return new long[wordCount(patternCount)];
+	}
+	
+	
+	/**
+	 * Overwrites the given bit set with the set of patterns found in the value. 
+	 * No pattern is found in {@code null} value.
+	 */
+	void match(String value, long[] matches) {
+		if (value == null) {
+			Arrays.fill(matches, 0);
+			return;
+		}
+		
+		System.arraycopy(emptyPatterns, 0, matches, 0, emptyPatterns.length);
+		var node = ROOT;
+		for (int i = 0; i < value.length(); i++) {
+			var c = EntryFilterChain.foldCase(value.charAt(i));
+			var target = transition(node, c);
+			while (target < 0 && node != ROOT) {
+				node = failureLinks[node];
+				target = transition(node, c);
+			}
+			node = target >= 0 ? target : ROOT;
+			
+			var output = outputs[node];
+			if (output != null) {
+				for (int word = 0; word < output.length; word++)
+					matches[word] |= output[word];
+			}
+		}
+	}
+	
+	
+	static boolean isMatched(long[] matches, int patternIndex) {
+		return (matches[patternIndex >>> 6] & (1L << patternIndex)) != 0;
+	}
+	
+	
+	private int transition(int node, char c) {
+		var index = Arrays.binarySearch(transitionChars[node], c);
+		return index >= 0 ? transitionTargets[node][index] : -1;
+	}
+	
+	
+	private static int wordCount(int bitCount) {
+		return (bitCount + 63) >>> 6;
+	}
+	
+	
+	private static void setBit(long[] bits, int index) {
+		bits[index >>> 6] |= 1L << index;
+	}
+	
+	
+	private static long[] union(long[] bits1, long[] bits2) {
+		var result = bits1.clone();
+		for (int word = 0; word < result.length; word++)
+			result[word] |= bits2[word];
+		return result;
+	}
+	
+}
@@ -1,5 +1,7 @@
 package io.bottomfeeder.filter;
 
+import java.util.Collection;
+
 import org.springframework.data.jpa.repository.Query;
 
 import io.bottomfeeder.sourcefeed.SourceFeed;
@@ -21,4 +23,17 @@ public interface SourceFeedEntryFilterRepository extends EntryFilterRepository<S
 	@Override
 	boolean isAssociatedEntityOwner(long entryFilterId, Long userId);
 	
+	
+	@Query("""
+			select 
+				count(sourceFeedEntryFilter) 
+			from 
+				SourceFeedEntryFilter sourceFeedEntryFilter 
+			where 
+				sourceFeedEntryFilter.id in :entryFilterIds and 
+				:userId = sourceFeedEntryFilter.associatedEntity.digest.owner.id
+		   """)
+	@Override
+	long countByAssociatedEntityOwner(Collection<Long> entryFilterIds, Long userId);
+	
 }
@@ -1,5 +1,6 @@
 package io.bottomfeeder.security;
 
+import static io.bottomfeeder.config.Constants.ACTUATOR_URL_BASE;
 import static io.bottomfeeder.config.Constants.ANONYMOUS_PRINCIPAL;
 import static io.bottomfeeder.config.Constants.API_URL_BASE;
 import static io.bottomfeeder.config.Constants.DIGEST_FEED_URL;
@@ -117,6 +118,8 @@ class SecurityConfiguration {
 			.authorizeRequests()
 				.antMatchers("/").permitAll()
 				.antMatchers(DIGEST_FEED_URL + "/**").permitAll()
+				.antMatchers(ACTUATOR_URL_BASE + "/health").permitAll()
+				.antMatchers(ACTUATOR_URL_BASE + "/**").hasAuthority(Role.Name.ADMIN)
 				.antMatchers(API_URL_BASE + "/authenticate").anonymous()
 				.antMatchers(API_URL_BASE + "/signup").anonymous()
 				.anyRequest().authenticated()
@@ -171,6 +174,33 @@ class SecurityConfiguration {
 	}
 	
 	
+	/**
+	 * Extends general web security configuration to add the ability to access actuator
+	 * endpoints using HTTP Basic authentication.
+	 * This is necessary for metrics scrapers, which cannot log in through the API.
+	 */
+	@Configuration
+	@Order(2)
+	class ActuatorSecurityConfiguration extends GeneralSecurityConfiguration {
+
+		public ActuatorSecurityConfiguration(
+				UserDetailsService userDetailsService,
+				AuthenticationEntryPoint authenticationEntryPoint, 
+				AccessDeniedHandler accessDeniedHandler,
+				Environment environment) {
+			super(userDetailsService, authenticationEntryPoint, accessDeniedHandler, environment);
+		}
+
+		
+		@Override
+		protected void configure(HttpSecurity httpSecurity) throws Exception {
+			super.configure(httpSecurity);
+			httpSecurity.antMatcher(ACTUATOR_URL_BASE + "/**").httpBasic();
+		}
+
+	}
+	
+	
 	/**
 	 * Implements action taken when expired session is detected.
 	 * This implementation sends a JSON-converted error response with related details.
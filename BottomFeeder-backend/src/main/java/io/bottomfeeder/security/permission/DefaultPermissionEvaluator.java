@@ -1,7 +1,10 @@
 package io.bottomfeeder.security.permission;
 
+import static java.util.stream.Collectors.toList;
+
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,6 +24,7 @@ import io.bottomfeeder.user.UserService;
  * for {@code @PreAuthorize/PostAuthorize}-annotated methods. 
  * This implementation mostly determines the target entity and then delegates to {@code PermissionService}
  * to perform actual permission checks.
+ * Collections of models of the same entity are delegated as a whole, so that they can be checked in bulk.
  */
 class DefaultPermissionEvaluator implements PermissionEvaluator {
 
@@ -54,7 +58,16 @@ class DefaultPermissionEvaluator implements PermissionEvaluator {
 			return hasPermission(user, entityModel.entityId(), entityModel.entityClass(), permission);
 		}
 		else if (targetDomainObject instanceof Collection<?> collection) {
-			// For collection, perform short-circuit recursive check of given permission for
+			// Models of the same entity are checked together, with at most one query
+			var targetEntityClass = getCommonEntityClass(collection);
+			if (targetEntityClass != null) {
+				var targetIds = collection.stream()
+						.map(object -> ((EntityModel<?>)object).entityId())
+						.collect(toList());
+				return hasPermissionForAll(user, targetIds, targetEntityClass, permission);
+			}
+			
+			// Otherwise, perform short-circuit recursive check of given permission for
 			// all of its elements. The permission is only granted for collection if it is 
 			// granted for each element.
 			for (var object : collection) {
@@ -96,6 +109,50 @@ class DefaultPermissionEvaluator implements PermissionEvaluator {
 	}
 
 	
+	private boolean hasPermissionForAll(User user, List<Long> targetIds, Class<?> targetEntityClass, 
+			Permission permission) {
+		if (targetIds.contains(null)) {
+			return false;
+		}
+		else {
+			if (targetEntityClass == Digest.class) {
+				return permissionService.hasDigestPermissionForAll(targetIds, user, permission);
+			}
+			else if (targetEntityClass == SourceFeed.class) {
+				return permissionService.hasSourceFeedPermissionForAll(targetIds, user, permission);
+			}
+			else if (targetEntityClass == DigestEntryFilter.class) {
+				return permissionService.hasDigestEntryFilterPermissionForAll(targetIds, user, permission);
+			}
+			else if (targetEntityClass == SourceFeedEntryFilter.class) {
+				return permissionService.hasSourceFeedEntryFilterPermissionForAll(targetIds, user, permission);
+			}
+			else {
+				logger.warn(String.format("Unsupported target entity type: %s", targetEntityClass));
+				return false;
+			}
+		}
+	}
+	
+	
+	/**
+	 * Returns entity class of collection elements if all of them are models of the same entity, 
+	 * or {@code null} otherwise.
+	 */
+	private static Class<?> getCommonEntityClass(Collection<?> collection) {
+		Class<?> entityClass = null;
+		for (var object : collection) {
+			if (!(object instanceof EntityModel<?> entityModel))
+				return null;
+			if (entityClass == null)
+				entityClass = entityModel.entityClass();
+			else if (entityClass != entityModel.entityClass())
+				return null;
+		}
+		return entityClass;
+	}
+	
+	
 	private User getUser(Authentication authentication) {
 		return userService.getAuthenticatedUserOrNull(authentication);
 	}
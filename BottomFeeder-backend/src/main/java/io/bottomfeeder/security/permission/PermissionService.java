@@ -1,38 +1,86 @@
 package io.bottomfeeder.security.permission;
 
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Objects;
+import java.util.function.BooleanSupplier;
+import java.util.function.ToLongBiFunction;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
+import io.bottomfeeder.digest.DigestChangeEvent;
+import io.bottomfeeder.digest.DigestIndex;
 import io.bottomfeeder.digest.DigestRepository;
 import io.bottomfeeder.filter.DigestEntryFilterRepository;
 import io.bottomfeeder.filter.EntryFilterRepository;
 import io.bottomfeeder.filter.SourceFeedEntryFilterRepository;
 import io.bottomfeeder.sourcefeed.SourceFeedRepository;
 import io.bottomfeeder.user.User;
+import io.bottomfeeder.util.TimedCache;
+import io.bottomfeeder.util.TimedCacheMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
 
 /**
  * A service that implements actual permission-checking logic for determining the rights
  * that specified user has for target entity.
+ * 
+ * Access to digest feeds is checked against digest index, without querying the database. Other decisions 
+ * are memoized for the duration of current request, and cached for a short time across requests.
+ * Since ownership and privacy of entities only change along with digest configuration, cached decisions 
+ * are discarded upon receiving {@code DigestChangeEvent} with configuration change, once the transaction 
+ * that made the change is committed.
  */
 @Service
 class PermissionService {
 	
+	private static final String REQUEST_DECISIONS_ATTRIBUTE = PermissionService.class.getName() + ".decisions";
+	
 	private final DigestRepository digestRepository;
+	private final DigestIndex digestIndex;
 	private final SourceFeedRepository sourceFeedRepository;
 	private final DigestEntryFilterRepository digestEntryFilterRepository;
 	private final SourceFeedEntryFilterRepository sourceFeedEntryFilterRepository;
-
+	private final TimedCache<DecisionKey, Boolean> decisionCache;
+	
+	// Guarded by this
+	private long invalidationCount;
+	
+	
+	/**
+	 * Kind of permission target. Read, update and delete permissions share the same decision, 
+	 * which is based on ownership, so permission itself is not part of decision key.
+	 */
+	private enum TargetType {
+		DIGEST, SOURCE_FEED, DIGEST_ENTRY_FILTER, SOURCE_FEED_ENTRY_FILTER
+	}
+	
+	
+	private record DecisionKey(TargetType targetType, long targetId, Long userId) {}
+	
 	
 	public PermissionService(
 			DigestRepository digestRepository, 
+			DigestIndex digestIndex,
 			SourceFeedRepository sourceFeedRepository, 
 			DigestEntryFilterRepository digestEntryFilterRepository, 
-			SourceFeedEntryFilterRepository sourceFeedEntryFilterRepository) {
+			SourceFeedEntryFilterRepository sourceFeedEntryFilterRepository,
+			@Value("${bf.permission-cache.max-size:10000}") int cacheMaxSize,
+			@Value("${bf.permission-cache.ttl-seconds:30}") long cacheTimeToLiveSeconds,
+			MeterRegistry meterRegistry) {
 		this.digestRepository = digestRepository;
+		this.digestIndex = digestIndex;
 		this.sourceFeedRepository = sourceFeedRepository;
 		this.digestEntryFilterRepository = digestEntryFilterRepository;
 		this.sourceFeedEntryFilterRepository = sourceFeedEntryFilterRepository;
+		this.decisionCache = new TimedCache<>(cacheMaxSize, Duration.ofSeconds(cacheTimeToLiveSeconds));
+		new TimedCacheMetrics("permission-decision", decisionCache::getStats).bindTo(meterRegistry);
 	}
 	
 	
@@ -47,7 +95,8 @@ class PermissionService {
 					}
 					else {
 						var id = castIdToLong(digestId);
-						yield digestRepository.isDigestOwner(id, user.getId());
+						yield isGranted(new DecisionKey(TargetType.DIGEST, id, user.getId()), 
+								() -> digestRepository.isDigestOwner(id, user.getId()));
 					}
 				}
 				else {
@@ -61,7 +110,7 @@ class PermissionService {
 				else {
 					var externalId = castId(digestId, String.class);
 					var userId = user != null ? user.getId() : null;
-					yield digestRepository.canAccessDigestFeed(externalId, userId);
+					yield digestIndex.canAccessDigestFeed(externalId, userId);
 				}
 				
 			} 
@@ -70,6 +119,17 @@ class PermissionService {
 	}
 	
 	
+	public boolean hasDigestPermissionForAll(Collection<?> digestIds, User user, Permission permission) {
+		ensureNonNullPermission(permission);
+		
+		return switch (permission) {
+			case READ, UPDATE, DELETE -> hasOwnershipPermissionForAll(TargetType.DIGEST, digestIds, user, 
+					digestRepository::countOwnedDigests);
+			default -> digestIds.stream().allMatch(digestId -> hasDigestPermission(digestId, user, permission));
+		};
+	}
+	
+	
 	public boolean hasSourceFeedPermission(Object sourceFeedId, User user, Permission permission) {
 		ensureNonNullPermission(permission);
 		
@@ -77,7 +137,8 @@ class PermissionService {
 			return user.isAdmin() || switch (permission) {
 				case READ, UPDATE, DELETE -> {
 					var id = castIdToLong(sourceFeedId);
-					yield sourceFeedRepository.isSourceFeedDigestOwner(id, user.getId());
+					yield isGranted(new DecisionKey(TargetType.SOURCE_FEED, id, user.getId()), 
+							() -> sourceFeedRepository.isSourceFeedDigestOwner(id, user.getId()));
 				}
 				default -> throw unsupportedPermissionError("source feed", permission);
 			};		
@@ -88,25 +149,60 @@ class PermissionService {
 	}
 	
 	
+	public boolean hasSourceFeedPermissionForAll(Collection<?> sourceFeedIds, User user, Permission permission) {
+		ensureNonNullPermission(permission);
+		
+		return switch (permission) {
+			case READ, UPDATE, DELETE -> hasOwnershipPermissionForAll(TargetType.SOURCE_FEED, sourceFeedIds, user, 
+					sourceFeedRepository::countOwnedSourceFeeds);
+			default -> throw unsupportedPermissionError("source feed", permission);
+		};
+	}
+	
+	
 	public boolean hasDigestEntryFilterPermission(Object digestEntryFilterId, User user, Permission permission) {
-		return hasEntryFilterPermission(castIdToLong(digestEntryFilterId), user, permission, 
-				digestEntryFilterRepository);
+		return hasEntryFilterPermission(TargetType.DIGEST_ENTRY_FILTER, castIdToLong(digestEntryFilterId), 
+				user, permission, digestEntryFilterRepository);
+	}
+	
+	
+	public boolean hasDigestEntryFilterPermissionForAll(Collection<?> digestEntryFilterIds, User user, 
+			Permission permission) {
+		return hasEntryFilterPermissionForAll(TargetType.DIGEST_ENTRY_FILTER, digestEntryFilterIds, 
+				user, permission, digestEntryFilterRepository);
 	}
 	
 	
 	public boolean hasSourceFeedEntryFilterPermission(Object sourceFeedEntryFilterId, User user, Permission permission) {
-		return hasEntryFilterPermission(castIdToLong(sourceFeedEntryFilterId), user, permission,
-				sourceFeedEntryFilterRepository);
+		return hasEntryFilterPermission(TargetType.SOURCE_FEED_ENTRY_FILTER, castIdToLong(sourceFeedEntryFilterId), 
+				user, permission, sourceFeedEntryFilterRepository);
 	}
 	
 	
-	private static boolean hasEntryFilterPermission(long entryFilterId, User user, Permission permission, 
-			EntryFilterRepository<?,?> entryFilterRepository) {
+	public boolean hasSourceFeedEntryFilterPermissionForAll(Collection<?> sourceFeedEntryFilterIds, User user, 
+			Permission permission) {
+		return hasEntryFilterPermissionForAll(TargetType.SOURCE_FEED_ENTRY_FILTER, sourceFeedEntryFilterIds, 
+				user, permission, sourceFeedEntryFilterRepository);
+	}
+	
+	
+	@TransactionalEventListener(fallbackExecution = true)
+	public synchronized void handleDigestChange(DigestChangeEvent event) {
+		if (event.configChange()) {
+			invalidationCount++;
+			decisionCache.clear();
+		}
+	}
+	
+	
+	private boolean hasEntryFilterPermission(TargetType targetType, long entryFilterId, User user, 
+			Permission permission, EntryFilterRepository<?,?> entryFilterRepository) {
 		ensureNonNullPermission(permission);
 		
 		if (user != null) {
 			return user.isAdmin() || switch (permission) {
-				case READ, UPDATE, DELETE -> entryFilterRepository.isAssociatedEntityOwner(entryFilterId, user.getId());
+				case READ, UPDATE, DELETE -> isGranted(new DecisionKey(targetType, entryFilterId, user.getId()), 
+						() -> entryFilterRepository.isAssociatedEntityOwner(entryFilterId, user.getId()));
 				default -> throw unsupportedPermissionError("entry filter", permission);
 			};
 		}
@@ -114,6 +210,114 @@ class PermissionService {
 			return false;
 		}
 	}
+	
+	
+	private boolean hasEntryFilterPermissionForAll(TargetType targetType, Collection<?> entryFilterIds, User user, 
+			Permission permission, EntryFilterRepository<?,?> entryFilterRepository) {
+		ensureNonNullPermission(permission);
+		
+		return switch (permission) {
+			case READ, UPDATE, DELETE -> hasOwnershipPermissionForAll(targetType, entryFilterIds, user, 
+					entryFilterRepository::countByAssociatedEntityOwner);
+			default -> throw unsupportedPermissionError("entry filter", permission);
+		};
+	}
+	
+	
+	/**
+	 * Checks that user owns all of the specified entities. Entities without known decision 
+	 * are checked with a single query, which counts owned entities among them.
+	 */
+	private boolean hasOwnershipPermissionForAll(TargetType targetType, Collection<?> targetIds, User user,
+			ToLongBiFunction<Collection<Long>, Long> ownedCountQuery) {
+		if (user == null)
+			return false;
+		if (user.isAdmin())
+			return true;
+		
+		var userId = user.getId();
+		var uncheckedIds = new LinkedHashSet<Long>();
+		for (var targetId : targetIds) {
+			var id = castIdToLong(targetId);
+			var decision = getKnownDecision(new DecisionKey(targetType, id, userId));
+			if (decision == null)
+				uncheckedIds.add(id);
+			else if (!decision)
+				return false;
+		}
+		if (uncheckedIds.isEmpty())
+			return true;
+		
+		var invalidationCountBefore = getInvalidationCount();
+		var granted = ownedCountQuery.applyAsLong(uncheckedIds, userId) == uncheckedIds.size();
+		
+		// Denial cannot be attributed to particular entities, so only grants are recorded
+		if (granted) {
+			for (var id : uncheckedIds)
+				putDecision(new DecisionKey(targetType, id, userId), true, invalidationCountBefore);
+		}
+		return granted;
+	}
+	
+	
+	private boolean isGranted(DecisionKey key, BooleanSupplier check) {
+		var decision = getKnownDecision(key);
+		if (decision == null) {
+			var invalidationCountBefore = getInvalidationCount();
+			decision = check.getAsBoolean();
+			putDecision(key, decision, invalidationCountBefore);
+		}
+		return decision;
+	}
+	
+	
+	private Boolean getKnownDecision(DecisionKey key) {
+		var requestDecisions = getRequestDecisions();
+		var decision = requestDecisions != null ? requestDecisions.get(key) : null;
+		if (decision == null) {
+			decision = decisionCache.get(key);
+			if (decision != null && requestDecisions != null)
+				requestDecisions.put(key, decision);
+		}
+		return decision;
+	}
+	
+	
+	private void putDecision(DecisionKey key, boolean decision, long invalidationCountBefore) {
+		var requestDecisions = getRequestDecisions();
+		if (requestDecisions != null)
+			requestDecisions.put(key, decision);
+		
+		synchronized (this) {
+			// Decision made concurrently with invalidation might be stale, so it's not cached
+			if (invalidationCount == invalidationCountBefore)
+				decisionCache.put(key, decision);
+		}
+	}
+	
+	
+	private synchronized long getInvalidationCount() {
+		return invalidationCount;
+	}
+	
+	
+	/**
+	 * Returns decisions made during current request, or {@code null} if there's no current request.
+	 */
+	private static Map<DecisionKey, Boolean> getRequestDecisions() {
+		var requestAttributes = RequestContextHolder.getRequestAttributes();
+		if (requestAttributes == null)
+			return null;
+		
+		@SuppressWarnings("unchecked")
+		var decisions = (Map<DecisionKey, Boolean>)requestAttributes.getAttribute(REQUEST_DECISIONS_ATTRIBUTE, 
+				RequestAttributes.SCOPE_REQUEST);
+		if (decisions == null) {
+			decisions = new HashMap<>();
+			requestAttributes.setAttribute(REQUEST_DECISIONS_ATTRIBUTE, decisions, RequestAttributes.SCOPE_REQUEST);
+		}
+		return decisions;
+	}
 
 	
 	private static void ensureNonNullPermission(Permission permission) {
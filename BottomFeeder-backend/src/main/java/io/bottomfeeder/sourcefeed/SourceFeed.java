@@ -34,6 +34,9 @@ public class SourceFeed {
 	
 	public static final int TITLE_MAX_SIZE = 300;
 	
+	public static final int ETAG_MAX_SIZE = 400;
+	public static final int LAST_MODIFIED_MAX_SIZE = 100;
+	
 	public static final int CONTENT_UPDATE_INTERVAL_MIN = 10;
 	public static final int CONTENT_UPDATE_INTERVAL_MAX = 1440;
 	private static final int CONTENT_UPDATE_INTERVAL_DEFAULT = 60;
@@ -75,6 +78,18 @@ public class SourceFeed {
 	@Column(name = "content_update_date")
 	private Instant contentUpdateDate;
 	
+	@Column(length = ETAG_MAX_SIZE)
+	private String etag;
+	
+	@Column(name = "last_modified", length = LAST_MODIFIED_MAX_SIZE)
+	private String lastModified;
+	
+	@Column(name = "failure_count")
+	private Integer failureCount;
+	
+	@Column(name = "next_update_date")
+	private Instant nextUpdateDate;
+	
 	@Min(message = VALIDATION_CONTENT_UPDATE_INTERVAL_MIN, value = CONTENT_UPDATE_INTERVAL_MIN)
 	@Max(message = VALIDATION_CONTENT_UPDATE_INTERVAL_MAX, value = CONTENT_UPDATE_INTERVAL_MAX)
 	@Column(name = "content_update_interval", nullable = false)
@@ -85,6 +100,10 @@ public class SourceFeed {
 	@Column(name = "max_entries", nullable = false)
 	private int maxEntries = MAX_ENTRIES_DEFAULT;
 	
+	// Incremented on every change of settings that determine stored entries (digest, max entries, filters)
+	@Column(name = "entry_settings_version")
+	private Integer entrySettingsVersion = 0;
+	
 	@NotNull(message = VALIDATION_DIGEST_NULL)
 	@ManyToOne(optional = false)
 	private Digest digest;
@@ -140,6 +159,38 @@ public class SourceFeed {
 		this.contentUpdateDate = contentUpdateDate;
 	}
 
+	public String getEtag() {
+		return etag;
+	}
+
+	public void setEtag(String etag) {
+		this.etag = etag;
+	}
+
+	public String getLastModified() {
+		return lastModified;
+	}
+
+	public void setLastModified(String lastModified) {
+		this.lastModified = lastModified;
+	}
+
+	public int getFailureCount() {
+		return failureCount != null ? failureCount : 0;
+	}
+
+	public void setFailureCount(int failureCount) {
+		this.failureCount = failureCount;
+	}
+
+	public Instant getNextUpdateDate() {
+		return nextUpdateDate;
+	}
+
+	public void setNextUpdateDate(Instant nextUpdateDate) {
+		this.nextUpdateDate = nextUpdateDate;
+	}
+
 	public int getContentUpdateInterval() {
 		return contentUpdateInterval;
 	}
@@ -156,6 +207,14 @@ public class SourceFeed {
 		this.maxEntries = maxEntries;
 	}
 
+	public int getEntrySettingsVersion() {
+		return entrySettingsVersion != null ? entrySettingsVersion : 0;
+	}
+
+	public void setEntrySettingsVersion(int entrySettingsVersion) {
+		this.entrySettingsVersion = entrySettingsVersion;
+	}
+
 	public Digest getDigest() {
 		return digest;
 	}
@@ -179,4 +238,33 @@ public class SourceFeed {
 		this.title = StringUtils.abbreviate(StringUtils.trimToNull(title), SourceFeed.TITLE_MAX_SIZE);
 	}
 	
+	@Transient
+	public void setContentValidators(String etag, String lastModified) {
+		this.etag = StringUtils.length(etag) <= ETAG_MAX_SIZE ? etag : null;
+		this.lastModified = StringUtils.length(lastModified) <= LAST_MODIFIED_MAX_SIZE ? lastModified : null;
+	}
+	
+	@Transient
+	public void clearContentValidators() {
+		etag = null;
+		lastModified = null;
+	}
+	
+	/**
+	 * Registers a change of settings that determine stored entries. Content validators are cleared, 
+	 * so that the entries are rebuilt on next update even if content is not modified, and entry settings 
+	 * version is incremented, so that updates running concurrently with the change detect it.
+	 */
+	@Transient
+	public void registerEntrySettingsChange() {
+		clearContentValidators();
+		entrySettingsVersion = getEntrySettingsVersion() + 1;
+	}
+	
+	@Transient
+	public void clearFailureState() {
+		failureCount = 0;
+		nextUpdateDate = null;
+	}
+	
 }
@@ -1,11 +1,13 @@
 package io.bottomfeeder.sourcefeed;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 import javax.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -35,6 +37,20 @@ public interface SourceFeedRepository extends JpaRepository<SourceFeed, Long> {
 	boolean existsBySourceAndDigest(String source, Digest digest);
 	
 	
+	/**
+	 * Same as {@link SourceFeed#registerEntrySettingsChange()}, for source feed that is not loaded.
+	 */
+	@Modifying(flushAutomatically = true)
+	@Query("""
+			update SourceFeed sourceFeed set 
+				sourceFeed.etag = null, 
+				sourceFeed.lastModified = null, 
+				sourceFeed.entrySettingsVersion = coalesce(sourceFeed.entrySettingsVersion, 0) + 1 
+			where sourceFeed.id = :id
+			""")
+	int registerEntrySettingsChange(long id);
+	
+	
 	@Query("""
 			select 
 				case when (count(sourceFeed) = 1) then true else false end 
@@ -45,4 +61,15 @@ public interface SourceFeedRepository extends JpaRepository<SourceFeed, Long> {
 			""")
 	boolean isSourceFeedDigestOwner(long sourceFeedId, Long userId);
 	
+	
+	@Query("""
+			select 
+				count(sourceFeed) 
+			from 
+				SourceFeed sourceFeed 
+			where 
+				sourceFeed.id in :sourceFeedIds and :userId = sourceFeed.digest.owner.id
+			""")
+	long countOwnedSourceFeeds(Collection<Long> sourceFeedIds, Long userId);
+	
 }
@@ -9,10 +9,12 @@ import java.util.Optional;
 import java.util.function.Function;
 
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import io.bottomfeeder.digest.Digest;
+import io.bottomfeeder.digest.DigestChangeEvent;
 import io.bottomfeeder.digest.DigestRepository;
 import io.bottomfeeder.filter.EntryFilterService;
 import io.bottomfeeder.sourcefeed.entry.SourceFeedEntryService;
@@ -29,6 +31,7 @@ public class SourceFeedService {
 	private final SourceFeedEntryService sourceFeedEntryService;
 	private final EntryFilterService entryFilterService;
 	private final DigestRepository digestRepository;
+	private final ApplicationEventPublisher eventPublisher;
 
 	
 	public SourceFeedService(
@@ -36,12 +39,14 @@ public class SourceFeedService {
 			SourceFeedContentUpdateService sourceFeedContentUpdateService,
 			SourceFeedEntryService sourceFeedEntryService,
 			EntryFilterService entryFilterService, 
-			DigestRepository digestRepository) {
+			DigestRepository digestRepository,
+			ApplicationEventPublisher eventPublisher) {
 		this.sourceFeedRepository = sourceFeedRepository;
 		this.sourceFeedContentUpdateService = sourceFeedContentUpdateService;
 		this.sourceFeedEntryService = sourceFeedEntryService;
 		this.entryFilterService = entryFilterService;
 		this.digestRepository = digestRepository;
+		this.eventPublisher = eventPublisher;
 	}
 	
 	
@@ -63,7 +68,9 @@ public class SourceFeedService {
 			throw duplicateSourceFeedError(source, digest);
 		
 		var sourceFeed = new SourceFeed(source, contentUpdateInterval, maxEntries, digest);
-		return updateContent ? updateContentAndSave(sourceFeed) : sourceFeedRepository.save(sourceFeed);
+		eventPublisher.publishEvent(new DigestChangeEvent(digest, true));
+		// Content recently loaded for the same source, e.g. when the feed is added to several digests, is reused
+		return updateContent ? updateContentAndSave(sourceFeed, false) : sourceFeedRepository.save(sourceFeed);
 	}
 	
 	
@@ -86,25 +93,42 @@ public class SourceFeedService {
 		
 		if (sourceChanged) {
 			sourceFeed.setSource(newSource);
+			sourceFeed.registerEntrySettingsChange();
+			sourceFeed.clearFailureState();
 			sourceFeedContentUpdateService.cancelUpdate(id);
 			if (!updateContent)
 				// If source changed, purge content-related data as it's no longer relevant 
 				// and must be updated anyway
 				purgeContent(sourceFeed);
 		}
+		else if (digestChanged || sourceFeed.getMaxEntries() != newMaxEntries) {
+			// Make sure that new digest and limit are applied on next update even if content is not modified,
+			// and by updates that are running now
+			sourceFeed.registerEntrySettingsChange();
+		}
 		
 		sourceFeed.setDigest(newDigest);
 		sourceFeed.setContentUpdateInterval(newContentUpdateInterval);
 		sourceFeed.setMaxEntries(newMaxEntries);
+		if (digestChanged)
+			sourceFeedEntryService.updateSourceFeedEntriesDigest(sourceFeed);
+		
+		eventPublisher.publishEvent(new DigestChangeEvent(currentDigest, true));
+		if (digestChanged)
+			eventPublisher.publishEvent(new DigestChangeEvent(newDigest, true));
 		
-		return updateContent ? updateContentAndSave(sourceFeed) : sourceFeedRepository.save(sourceFeed);
+		// Update of existing feed is explicitly requested, so cached content is not used
+		return updateContent ? updateContentAndSave(sourceFeed, true) : sourceFeedRepository.save(sourceFeed);
 	}
 	
 	
-	private SourceFeed updateContentAndSave(SourceFeed sourceFeed) {
-		var newFeedData = sourceFeedContentUpdateService.loadLatestContent(sourceFeed);
+	private SourceFeed updateContentAndSave(SourceFeed sourceFeed, boolean refresh) {
+		var content = sourceFeedContentUpdateService.loadLatestContent(sourceFeed, refresh);
+		var newFeedData = content.feed();
 		sourceFeed.setAbbreviatedTitle(newFeedData.getTitle());
+		sourceFeed.setContentValidators(content.etag(), content.lastModified());
 		sourceFeed.setContentUpdateDate(Instant.now());
+		sourceFeed.clearFailureState();
 		
 		sourceFeed = sourceFeedRepository.save(sourceFeed);
 		sourceFeedEntryService.replaceSourceFeedEntries(newFeedData, sourceFeed);
@@ -119,6 +143,7 @@ public class SourceFeedService {
 		sourceFeedEntryService.deleteSourceFeedEntries(sourceFeed);
 		sourceFeed.setTitle(null);
 		sourceFeed.setContentUpdateDate(null);
+		sourceFeed.clearContentValidators();
 	}
 	
 	
@@ -135,7 +160,7 @@ public class SourceFeedService {
 	}
 	
 	
-	private static String normalizeSource(String source) {
+	public static String normalizeSource(String source) {
 		source = StringUtils.trimToEmpty(source);
 		
 		var sourceUri = URI.create(source);
@@ -171,6 +196,8 @@ public class SourceFeedService {
 	
 	@Transactional
 	public void deleteSourceFeed(long id) {
+		sourceFeedRepository.findById(id).ifPresent(
+				sourceFeed -> eventPublisher.publishEvent(new DigestChangeEvent(sourceFeed.getDigest(), true)));
 		sourceFeedContentUpdateService.cancelUpdate(id);
 		sourceFeedEntryService.deleteSourceFeedEntries(id);
 		entryFilterService.deleteSourceFeedEntryFilters(id);
@@ -1,15 +1,24 @@
 package io.bottomfeeder.sourcefeed.entry;
 
 import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Lob;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
+import javax.persistence.Transient;
+
+import io.bottomfeeder.digest.feed.DigestFeedFormat;
+import io.bottomfeeder.filter.Element;
+import io.bottomfeeder.filter.EntryElementQueryMapping;
 import io.bottomfeeder.sourcefeed.SourceFeed;
 
 /**
@@ -21,15 +30,49 @@ import io.bottomfeeder.sourcefeed.SourceFeed;
  * 
  * The date property contains date/time of this entry which is usually published date, or updated date,
  * if published date is not specified.
+ * 
+ * Each entry has a key that identifies it within source feed across content updates (derived from 
+ * entry's URI, link or title), and a hash of its content, which allow to determine whether the entry
+ * is new, changed or unchanged compared to previously stored version.
+ * 
+ * Values of generic entry elements (title, link, author, guid, categories, dates and content excerpt)
+ * are extracted at ingest and stored alongside the content, so that entry filters can be evaluated
+ * without parsing it. Values that do not fit their columns are flagged as truncated, in which case
+ * the content has to be parsed to obtain exact value. Entries stored by previous versions have
+ * no extracted values at all. String values used by entry filters are also stored case-folded, 
+ * so that filters can be translated into query without relying on case conversion of the database.
+ * 
+ * The entry is also pre-rendered at ingest into XML fragments for each digest feed format, so that 
+ * digest feeds can be assembled from them without parsing the content. 
+ * 
+ * ID of the digest that entry's source feed belongs to is denormalized into the entry, so that
+ * the most recent entries of a digest can be selected using a single index.
  */
 @Entity
-@Table(name = "source_feed_entry")
+@Table(name = "source_feed_entry", indexes = {
+		@Index(name = "source_feed_entry_source_feed_date_idx", columnList = "source_feed_id, date desc"),
+		@Index(name = "source_feed_entry_digest_date_idx", columnList = "digest_id, date desc")
+})
 public class SourceFeedEntry {
 
+	public static final int ENTRY_KEY_SIZE = 32;
+	public static final int CONTENT_HASH_SIZE = 32;
+	public static final int TITLE_MAX_SIZE = 1000;
+	public static final int LINK_MAX_SIZE = 2000;
+	public static final int AUTHOR_MAX_SIZE = 500;
+	public static final int GUID_MAX_SIZE = 2000;
+	public static final int CATEGORIES_MAX_SIZE = 2000;
+	public static final int EXCERPT_MAX_SIZE = 2000;
+	
+	private static final String CATEGORY_SEPARATOR = "\n";
+
 	@Id
 	@GeneratedValue(strategy = GenerationType.IDENTITY)
 	private Long id;
 
+	@Column(name = "entry_key", length = ENTRY_KEY_SIZE)
+	private String entryKey;
+	
 	@Column(nullable = false)
 	private Instant date;
 	
@@ -37,16 +80,81 @@ public class SourceFeedEntry {
 	@Column(nullable = false)
 	private byte[] content;
 	
+	@Column(name = "content_hash", length = CONTENT_HASH_SIZE)
+	private String contentHash;
+	
+	@Column(length = TITLE_MAX_SIZE)
+	private String title;
+	
+	@Column(length = LINK_MAX_SIZE)
+	private String link;
+	
+	@Column(length = AUTHOR_MAX_SIZE)
+	private String author;
+	
+	@Column(length = GUID_MAX_SIZE)
+	private String guid;
+	
+	@Column(length = CATEGORIES_MAX_SIZE)
+	private String categories;
+	
+	@Column(length = EXCERPT_MAX_SIZE)
+	private String excerpt;
+	
+	@Column(name = "folded_title", length = TITLE_MAX_SIZE)
+	private String foldedTitle;
+	
+	@Column(name = "folded_link", length = LINK_MAX_SIZE)
+	private String foldedLink;
+	
+	@Column(name = "folded_author", length = AUTHOR_MAX_SIZE)
+	private String foldedAuthor;
+	
+	@Column(name = "folded_categories", length = CATEGORIES_MAX_SIZE)
+	private String foldedCategories;
+	
+	@Column(name = "folded_excerpt", length = EXCERPT_MAX_SIZE)
+	private String foldedExcerpt;
+	
+	@Column(name = "published_date")
+	private Instant publishedDate;
+	
+	@Column(name = "updated_date")
+	private Instant updatedDate;
+	
+	@Column(name = "content_truncated")
+	private Boolean contentTruncated;
+	
+	@Column(name = "fields_truncated")
+	private Boolean fieldsTruncated;
+	
+	@Lob
+	@Column(name = "rss_fragment")
+	private byte[] rssFragment;
+	
+	@Lob
+	@Column(name = "atom_fragment")
+	private byte[] atomFragment;
+	
+	@Column(name = "fragments_rendered")
+	private Boolean fragmentsRendered;
+	
+	@Column(name = "digest_id")
+	private Long digestId;
+	
 	@ManyToOne(optional = false)
 	private SourceFeed sourceFeed;
 
 	
 	public SourceFeedEntry() {}
 
-	public SourceFeedEntry(Instant date, byte[] content, SourceFeed sourceFeed) {
+	public SourceFeedEntry(String entryKey, Instant date, byte[] content, String contentHash, SourceFeed sourceFeed) {
+		this.entryKey = entryKey;
 		this.date = date;
 		this.content = content;
+		this.contentHash = contentHash;
 		this.sourceFeed = sourceFeed;
+		this.digestId = sourceFeed.getDigest().getId();
 	}
 
 
@@ -58,6 +166,14 @@ public class SourceFeedEntry {
 		this.id = id;
 	}
 
+	public String getEntryKey() {
+		return entryKey;
+	}
+
+	public void setEntryKey(String entryKey) {
+		this.entryKey = entryKey;
+	}
+
 	public Instant getDate() {
 		return date;
 	}
@@ -74,6 +190,166 @@ public class SourceFeedEntry {
 		this.content = content;
 	}
 
+	public String getContentHash() {
+		return contentHash;
+	}
+
+	public void setContentHash(String contentHash) {
+		this.contentHash = contentHash;
+	}
+
+	public String getTitle() {
+		return title;
+	}
+
+	public void setTitle(String title) {
+		this.title = title;
+	}
+
+	public String getLink() {
+		return link;
+	}
+
+	public void setLink(String link) {
+		this.link = link;
+	}
+
+	public String getAuthor() {
+		return author;
+	}
+
+	public void setAuthor(String author) {
+		this.author = author;
+	}
+
+	public String getGuid() {
+		return guid;
+	}
+
+	public void setGuid(String guid) {
+		this.guid = guid;
+	}
+
+	public String getCategories() {
+		return categories;
+	}
+
+	public void setCategories(String categories) {
+		this.categories = categories;
+	}
+
+	public String getExcerpt() {
+		return excerpt;
+	}
+
+	public void setExcerpt(String excerpt) {
+		this.excerpt = excerpt;
+	}
+
+	public String getFoldedTitle() {
+		return foldedTitle;
+	}
+
+	public void setFoldedTitle(String foldedTitle) {
+		this.foldedTitle = foldedTitle;
+	}
+
+	public String getFoldedLink() {
+		return foldedLink;
+	}
+
+	public void setFoldedLink(String foldedLink) {
+		this.foldedLink = foldedLink;
+	}
+
+	public String getFoldedAuthor() {
+		return foldedAuthor;
+	}
+
+	public void setFoldedAuthor(String foldedAuthor) {
+		this.foldedAuthor = foldedAuthor;
+	}
+
+	public String getFoldedCategories() {
+		return foldedCategories;
+	}
+
+	public void setFoldedCategories(String foldedCategories) {
+		this.foldedCategories = foldedCategories;
+	}
+
+	public String getFoldedExcerpt() {
+		return foldedExcerpt;
+	}
+
+	public void setFoldedExcerpt(String foldedExcerpt) {
+		this.foldedExcerpt = foldedExcerpt;
+	}
+
+	public Instant getPublishedDate() {
+		return publishedDate;
+	}
+
+	public void setPublishedDate(Instant publishedDate) {
+		this.publishedDate = publishedDate;
+	}
+
+	public Instant getUpdatedDate() {
+		return updatedDate;
+	}
+
+	public void setUpdatedDate(Instant updatedDate) {
+		this.updatedDate = updatedDate;
+	}
+
+	public Boolean getContentTruncated() {
+		return contentTruncated;
+	}
+
+	public void setContentTruncated(Boolean contentTruncated) {
+		this.contentTruncated = contentTruncated;
+	}
+
+	public Boolean getFieldsTruncated() {
+		return fieldsTruncated;
+	}
+
+	public void setFieldsTruncated(Boolean fieldsTruncated) {
+		this.fieldsTruncated = fieldsTruncated;
+	}
+
+	public byte[] getRssFragment() {
+		return rssFragment;
+	}
+
+	public void setRssFragment(byte[] rssFragment) {
+		this.rssFragment = rssFragment;
+	}
+
+	public byte[] getAtomFragment() {
+		return atomFragment;
+	}
+
+	public void setAtomFragment(byte[] atomFragment) {
+		this.atomFragment = atomFragment;
+	}
+
+	public Boolean getFragmentsRendered() {
+		return fragmentsRendered;
+	}
+
+	public void setFragmentsRendered(Boolean fragmentsRendered) {
+		this.fragmentsRendered = fragmentsRendered;
+	}
+
+	public Long getDigestId() {
+		return digestId;
+	}
+
+	public void setDigestId(Long digestId) {
+		this.digestId = digestId;
+	}
+
 	public SourceFeed getSourceFeed() {
 		return sourceFeed;
 	}
@@ -82,4 +358,109 @@ public class SourceFeedEntry {
 		this.sourceFeed = sourceFeed;
 	}
 	
+	@Transient
+	public void setContentData(SourceFeedEntry other) {
+		date = other.date;
+		content = other.content;
+		contentHash = other.contentHash;
+		title = other.title;
+		link = other.link;
+		author = other.author;
+		guid = other.guid;
+		categories = other.categories;
+		excerpt = other.excerpt;
+		foldedTitle = other.foldedTitle;
+		foldedLink = other.foldedLink;
+		foldedAuthor = other.foldedAuthor;
+		foldedCategories = other.foldedCategories;
+		foldedExcerpt = other.foldedExcerpt;
+		publishedDate = other.publishedDate;
+		updatedDate = other.updatedDate;
+		contentTruncated = other.contentTruncated;
+		fieldsTruncated = other.fieldsTruncated;
+		rssFragment = other.rssFragment;
+		atomFragment = other.atomFragment;
+		fragmentsRendered = other.fragmentsRendered;
+		digestId = other.digestId;
+	}
+	
+	@Transient
+	public void setFragments(byte[] rssFragment, byte[] atomFragment) {
+		this.rssFragment = rssFragment;
+		this.atomFragment = atomFragment;
+		this.fragmentsRendered = Boolean.TRUE;
+	}
+	
+	@Transient
+	public byte[] getFragment(DigestFeedFormat targetFormat) {
+		return switch (targetFormat) {
+			case ATOM_1_0 -> atomFragment;
+			case RSS_2_0 -> rssFragment;
+		};
+	}
+	
+	@Transient
+	public void setElementValues(String title, String link, String author, String guid, List<String> categories,
+			String content, Instant publishedDate, Instant updatedDate) {
+		this.title = fit(title, TITLE_MAX_SIZE);
+		this.link = fit(link, LINK_MAX_SIZE);
+		this.author = fit(author, AUTHOR_MAX_SIZE);
+		this.guid = fit(guid, GUID_MAX_SIZE);
+		this.publishedDate = publishedDate;
+		this.updatedDate = updatedDate;
+		fieldsTruncated = exceeds(title, TITLE_MAX_SIZE) || exceeds(link, LINK_MAX_SIZE) 
+				|| exceeds(author, AUTHOR_MAX_SIZE) || exceeds(guid, GUID_MAX_SIZE);
+		
+		// Separator-joined categories can be split back only if no category name is empty or contains separator
+		var categoryNames = categories.stream().filter(Objects::nonNull).collect(Collectors.toList());
+		if (categoryNames.stream().anyMatch(name -> name.isEmpty() || name.contains(CATEGORY_SEPARATOR))) {
+			this.categories = null;
+			fieldsTruncated = true;
+		}
+		else {
+			var joinedCategories = categoryNames.isEmpty() ? null : String.join(CATEGORY_SEPARATOR, categoryNames);
+			this.categories = fit(joinedCategories, CATEGORIES_MAX_SIZE);
+			fieldsTruncated |= exceeds(joinedCategories, CATEGORIES_MAX_SIZE);
+		}
+		
+		contentTruncated = content.length() > EXCERPT_MAX_SIZE;
+		excerpt = contentTruncated ? content.substring(0, EXCERPT_MAX_SIZE) : content;
+		
+		// Folding preserves length, so folded values fit the same column sizes
+		foldedTitle = EntryElementQueryMapping.foldCase(this.title);
+		foldedLink = EntryElementQueryMapping.foldCase(this.link);
+		foldedAuthor = EntryElementQueryMapping.foldCase(this.author);
+		foldedCategories = EntryElementQueryMapping.foldCase(this.categories);
+		foldedExcerpt = EntryElementQueryMapping.foldCase(excerpt);
+	}
+	
+	@Transient
+	public boolean hasElementValue(Element element) {
+		if (contentTruncated == null || fieldsTruncated == null)
+			return false;
+		else
+			return element == Element.CONTENT ? !contentTruncated : !fieldsTruncated;
+	}
+	
+	@Transient
+	public Object getElementValue(Element element) {
+		return switch (element) {
+			case AUTHOR -> author;
+			case CATEGORIES -> categories != null ? List.of(categories.split(CATEGORY_SEPARATOR)) : List.of();
+			case CONTENT -> excerpt;
+			case LINK -> link;
+			case PUBLISH_DATE -> publishedDate;
+			case TITLE -> title;
+			case UPDATE_DATE -> updatedDate;
+		};
+	}
+	
+	private static String fit(String value, int maxSize) {
+		return exceeds(value, maxSize) ? null : value;
+	}
+	
+	private static boolean exceeds(String value, int maxSize) {
+		return value != null && value.length() > maxSize;
+	}
+	
 }
@@ -0,0 +1,79 @@
+package io.bottomfeeder.sourcefeed.entry;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A cursor over source feed entries, ordered from the most recent to the oldest.
+ * 
+ * Entries are fetched lazily in batches, starting with a small batch and doubling its size 
+ * on each subsequent fetch up to a limit, so that a feed contributing few entries to the result
+ * costs a single small query.
+ */
+final class SourceFeedEntryCursor {
+
+	/**
+	 * Orders cursors by their current entries, from the most recent to the oldest.
+	 */
+	static final Comparator<SourceFeedEntryCursor> MOST_RECENT_FIRST = Comparator
+			.comparing((SourceFeedEntryCursor cursor) -> cursor.current().getDate())
+			.thenComparing(cursor -> cursor.current().getId())
+			.reversed();
+	
+	private final BatchFetcher batchFetcher;
+	private final int maxBatchSize;
+	private final Deque<SourceFeedEntry> batch = new ArrayDeque<>();
+	
+	private int batchSize;
+	private SourceFeedEntry last;
+	private boolean exhausted;
+	
+	
+	/**
+	 * Fetches a batch of entries ordered from the most recent to the oldest, continuing after the given 
+	 * entry (or from the most recent entry if it's {@code null}).
+	 */
+	@FunctionalInterface
+	interface BatchFetcher {
+		
+		List<SourceFeedEntry> fetch(SourceFeedEntry after, int limit);
+		
+	}
+	
+	
+	SourceFeedEntryCursor(BatchFetcher batchFetcher, int initialBatchSize, int maxBatchSize) {
+		this.batchFetcher = batchFetcher;
+		this.batchSize = initialBatchSize;
+		this.maxBatchSize = maxBatchSize;
+	}
+	
+	
+	/**
+	 * Positions cursor at the next entry, fetching the next batch if needed.
+	 * 
+	 * @return {@code true} if cursor has current entry, {@code false} if there are no more entries
+	 */
+	boolean advance() {
+		if (!batch.isEmpty())
+			batch.removeFirst();
+		
+		if (batch.isEmpty() && !exhausted) {
+			var entries = batchFetcher.fetch(last, batchSize);
+			exhausted = entries.size() < batchSize;
+			if (!entries.isEmpty())
+				last = entries.get(entries.size() - 1);
+			batch.addAll(entries);
+			batchSize = Math.min(batchSize * 2, maxBatchSize);
+		}
+		
+		return !batch.isEmpty();
+	}
+	
+	
+	SourceFeedEntry current() {
+		return batch.getFirst();
+	}
+	
+}
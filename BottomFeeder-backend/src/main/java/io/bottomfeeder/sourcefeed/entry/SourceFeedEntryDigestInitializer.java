@@ -0,0 +1,33 @@
+package io.bottomfeeder.sourcefeed.entry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * An implementation of application runner callback that runs on startup and assigns digest ID 
+ * to source feed entries stored by previous versions, which have no denormalized digest ID yet.
+ */
+@Component
+class SourceFeedEntryDigestInitializer implements ApplicationRunner {
+
+	private static final Logger logger = LoggerFactory.getLogger(SourceFeedEntryDigestInitializer.class);
+	
+	private final SourceFeedEntryService sourceFeedEntryService;
+	
+	
+	SourceFeedEntryDigestInitializer(SourceFeedEntryService sourceFeedEntryService) {
+		this.sourceFeedEntryService = sourceFeedEntryService;
+	}
+	
+	
+	@Override
+	public void run(ApplicationArguments args) throws Exception {
+		var updatedCount = sourceFeedEntryService.updateMissingDigestIds();
+		if (updatedCount > 0)
+			logger.info(String.format("Assigned digest ID to %d source feed entries", updatedCount));
+	}
+	
+}
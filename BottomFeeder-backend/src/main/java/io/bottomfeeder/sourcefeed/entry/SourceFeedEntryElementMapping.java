@@ -0,0 +1,75 @@
+package io.bottomfeeder.sourcefeed.entry;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+import io.bottomfeeder.digest.feed.DigestFeedFormat;
+import io.bottomfeeder.filter.Element;
+import io.bottomfeeder.filter.EntryElementQueryMapping;
+
+/**
+ * Maps entry elements to the element values stored with source feed entries.
+ */
+final class SourceFeedEntryElementMapping implements EntryElementQueryMapping<SourceFeedEntry> {
+
+	private final DigestFeedFormat targetFormat;
+	
+	
+	SourceFeedEntryElementMapping(DigestFeedFormat targetFormat) {
+		this.targetFormat = targetFormat;
+	}
+	
+	
+	@Override
+	public Expression<?> getElementValue(Root<SourceFeedEntry> root, CriteriaBuilder criteriaBuilder, Element element) {
+		return switch (element) {
+			case AUTHOR -> root.get("author");
+			case CATEGORIES -> root.get("categories");
+			case CONTENT -> root.get("excerpt");
+			case LINK -> root.get("link");
+			case PUBLISH_DATE -> targetFormat == DigestFeedFormat.RSS_2_0 
+					? criteriaBuilder.coalesce(root.get("publishedDate"), root.get("updatedDate")) 
+					: root.get("publishedDate");
+			case TITLE -> root.get("title");
+			case UPDATE_DATE -> root.get("updatedDate");
+		};
+	}
+	
+	
+	@Override
+	public Expression<String> getFoldedElementValue(Root<SourceFeedEntry> root, CriteriaBuilder criteriaBuilder, 
+			Element element) {
+		return switch (element) {
+			case AUTHOR -> root.get("foldedAuthor");
+			case CATEGORIES -> root.get("foldedCategories");
+			case CONTENT -> root.get("foldedExcerpt");
+			case LINK -> root.get("foldedLink");
+			case TITLE -> root.get("foldedTitle");
+			case PUBLISH_DATE, UPDATE_DATE -> throw new IllegalArgumentException(
+					String.format("Element %s has no folded value", element));
+		};
+	}
+	
+	
+	@Override
+	public Predicate hasExactElementValue(Root<SourceFeedEntry> root, CriteriaBuilder criteriaBuilder, Element element) {
+		// Mirrors SourceFeedEntry.hasElementValue, with entries stored by previous versions having no values
+		var contentTruncated = root.<Boolean>get("contentTruncated");
+		var fieldsTruncated = root.<Boolean>get("fieldsTruncated");
+		var hasExactValue = criteriaBuilder.and(
+				criteriaBuilder.isNotNull(contentTruncated),
+				criteriaBuilder.isNotNull(fieldsTruncated),
+				criteriaBuilder.isFalse(element == Element.CONTENT ? contentTruncated : fieldsTruncated));
+		
+		// Entries stored by previous versions may have string values but no folded values
+		return switch (element) {
+			case PUBLISH_DATE, UPDATE_DATE -> hasExactValue;
+			default -> criteriaBuilder.and(hasExactValue, criteriaBuilder.or(
+					criteriaBuilder.isNull(getElementValue(root, criteriaBuilder, element)), 
+					criteriaBuilder.isNotNull(getFoldedElementValue(root, criteriaBuilder, element))));
+		};
+	}
+	
+}
@@ -0,0 +1,12 @@
+package io.bottomfeeder.sourcefeed.entry;
+
+/**
+ * Contains statistics of merging latest content of source feed into its stored entries.
+ */
+public record SourceFeedEntryMergeResult(int inserted, int updated, int deleted, int unchanged) {
+
+	public boolean hasChanges() {
+		return inserted > 0 || updated > 0 || deleted > 0;
+	}
+	
+}
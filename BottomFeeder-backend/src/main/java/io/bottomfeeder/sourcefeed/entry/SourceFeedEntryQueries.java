@@ -0,0 +1,55 @@
+package io.bottomfeeder.sourcefeed.entry;
+
+import java.util.List;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import io.bottomfeeder.digest.feed.DigestFeedFormat;
+
+/**
+ * Custom queries for source feed entries, implemented using JPA Criteria API.
+ * 
+ * Entries are returned in batches ordered from the most recent to the oldest (entries with the same 
+ * date are ordered by descending ID), and are not managed by persistence context, so that memory held by 
+ * them can be released as soon as they are processed. Only the properties needed to assemble digest feed
+ * in the target format are loaded: dates, extracted element values and their truncation flags, and
+ * the fragment pre-rendered in that format. Neither the content nor fragments of other formats are loaded.
+ */
+interface SourceFeedEntryQueries {
+
+	/**
+	 * Returns a batch of source feed entries selected by the given specification.
+	 * 
+	 * @param sourceFeedId the ID of source feed to select entries for
+	 * @param specification additional criteria for entries, may be {@code null}
+	 * @param targetFormat the format of the fragment to load
+	 * @param after the entry to continue after, or {@code null} to start from the most recent entry
+	 * @param limit the maximum number of entries to return
+	 * @return list of entries
+	 */
+	List<SourceFeedEntry> findSourceFeedEntries(long sourceFeedId, Specification<SourceFeedEntry> specification, 
+			DigestFeedFormat targetFormat, SourceFeedEntry after, int limit);
+	
+	
+	/**
+	 * Returns a batch of entries of all source feeds of the digest.
+	 * 
+	 * @param digestId the ID of digest to select entries for
+	 * @param targetFormat the format of the fragment to load
+	 * @param after the entry to continue after, or {@code null} to start from the most recent entry
+	 * @param limit the maximum number of entries to return
+	 * @return list of entries
+	 */
+	List<SourceFeedEntry> findDigestFeedEntries(long digestId, DigestFeedFormat targetFormat, SourceFeedEntry after, 
+			int limit);
+	
+	
+	/**
+	 * Returns content of source feed entry, for entries returned by the other queries without it.
+	 * 
+	 * @param id the ID of source feed entry
+	 * @return entry content, or {@code null} if there's no such entry
+	 */
+	byte[] findContentById(long id);
+	
+}
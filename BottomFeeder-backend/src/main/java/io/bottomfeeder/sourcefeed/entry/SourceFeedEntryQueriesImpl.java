@@ -0,0 +1,137 @@
+package io.bottomfeeder.sourcefeed.entry;
+
+import static java.util.stream.Collectors.toList;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import io.bottomfeeder.digest.feed.DigestFeedFormat;
+
+/**
+ * Implementation of custom queries for source feed entries.
+ */
+class SourceFeedEntryQueriesImpl implements SourceFeedEntryQueries {
+
+	// Fragment is selected from the column of the target format
+	private static final List<String> SELECTED_ATTRIBUTES = List.of("id", "date", "title", "link", "author", "guid", 
+			"categories", "excerpt", "publishedDate", "updatedDate", "contentTruncated", "fieldsTruncated");
+	private static final String FRAGMENT_ALIAS = "fragment";
+	
+	@PersistenceContext
+	private EntityManager entityManager;
+	
+	
+	@Override
+	public List<SourceFeedEntry> findSourceFeedEntries(long sourceFeedId, Specification<SourceFeedEntry> specification,
+			DigestFeedFormat targetFormat, SourceFeedEntry after, int limit) {
+		Specification<SourceFeedEntry> sourceFeedSpecification = (sourceFeedEntry, query, criteriaBuilder) -> 
+				criteriaBuilder.equal(sourceFeedEntry.get("sourceFeed").get("id"), sourceFeedId);
+		return findEntries(sourceFeedSpecification.and(specification), targetFormat, after, limit);
+	}
+	
+	
+	@Override
+	public List<SourceFeedEntry> findDigestFeedEntries(long digestId, DigestFeedFormat targetFormat, 
+			SourceFeedEntry after, int limit) {
+		Specification<SourceFeedEntry> digestSpecification = (sourceFeedEntry, query, criteriaBuilder) -> 
+				criteriaBuilder.equal(sourceFeedEntry.get("digestId"), digestId);
+		return findEntries(digestSpecification, targetFormat, after, limit);
+	}
+	
+	
+	private List<SourceFeedEntry> findEntries(Specification<SourceFeedEntry> specification, 
+			DigestFeedFormat targetFormat, SourceFeedEntry after, int limit) {
+		var criteriaBuilder = entityManager.getCriteriaBuilder();
+		var query = criteriaBuilder.createTupleQuery();
+		var sourceFeedEntry = query.from(SourceFeedEntry.class);
+		
+		var predicate = specification.toPredicate(sourceFeedEntry, query, criteriaBuilder);
+		if (after != null)
+			predicate = criteriaBuilder.and(predicate, isAfter(sourceFeedEntry, after, criteriaBuilder));
+		
+		var fragmentAttribute = switch (targetFormat) {
+			case ATOM_1_0 -> "atomFragment";
+			case RSS_2_0 -> "rssFragment";
+		};
+		var selections = new ArrayList<Selection<?>>();
+		for (var attribute : SELECTED_ATTRIBUTES)
+			selections.add(sourceFeedEntry.get(attribute).alias(attribute));
+		selections.add(sourceFeedEntry.get(fragmentAttribute).alias(FRAGMENT_ALIAS));
+		
+		query.multiselect(selections)
+			.where(predicate)
+			.orderBy(
+					criteriaBuilder.desc(sourceFeedEntry.get("date")), 
+					criteriaBuilder.desc(sourceFeedEntry.get("id")));
+		
+		return entityManager.createQuery(query)
+				.setMaxResults(limit)
+				.getResultStream()
+				.map(tuple -> toSourceFeedEntry(tuple, targetFormat))
+				.collect(toList());
+	}
+	
+	
+	@Override
+	public byte[] findContentById(long id) {
+		var criteriaBuilder = entityManager.getCriteriaBuilder();
+		var query = criteriaBuilder.createQuery(byte[].class);
+		var sourceFeedEntry = query.from(SourceFeedEntry.class);
+		query.select(sourceFeedEntry.<byte[]>get("content"))
+			.where(criteriaBuilder.equal(sourceFeedEntry.get("id"), id));
+		
+		return entityManager.createQuery(query)
+				.getResultStream()
+				.findFirst()
+				.orElse(null);
+	}
+	
+	
+	private static SourceFeedEntry toSourceFeedEntry(Tuple tuple, DigestFeedFormat targetFormat) {
+		var sourceFeedEntry = new SourceFeedEntry();
+		sourceFeedEntry.setId(tuple.get("id", Long.class));
+		sourceFeedEntry.setDate(tuple.get("date", Instant.class));
+		sourceFeedEntry.setTitle(tuple.get("title", String.class));
+		sourceFeedEntry.setLink(tuple.get("link", String.class));
+		sourceFeedEntry.setAuthor(tuple.get("author", String.class));
+		sourceFeedEntry.setGuid(tuple.get("guid", String.class));
+		sourceFeedEntry.setCategories(tuple.get("categories", String.class));
+		sourceFeedEntry.setExcerpt(tuple.get("excerpt", String.class));
+		sourceFeedEntry.setPublishedDate(tuple.get("publishedDate", Instant.class));
+		sourceFeedEntry.setUpdatedDate(tuple.get("updatedDate", Instant.class));
+		sourceFeedEntry.setContentTruncated(tuple.get("contentTruncated", Boolean.class));
+		sourceFeedEntry.setFieldsTruncated(tuple.get("fieldsTruncated", Boolean.class));
+		
+		var fragment = tuple.get(FRAGMENT_ALIAS, byte[].class);
+		switch (targetFormat) {
+			case ATOM_1_0 -> sourceFeedEntry.setAtomFragment(fragment);
+			case RSS_2_0 -> sourceFeedEntry.setRssFragment(fragment);
+		}
+		return sourceFeedEntry;
+	}
+	
+	
+	private static Predicate isAfter(Root<SourceFeedEntry> sourceFeedEntry, SourceFeedEntry after, 
+			CriteriaBuilder criteriaBuilder) {
+		// Keyset pagination, continuing right after the given entry
+		var date = sourceFeedEntry.<Instant>get("date");
+		var id = sourceFeedEntry.<Long>get("id");
+		return criteriaBuilder.or(
+				criteriaBuilder.lessThan(date, after.getDate()),
+				criteriaBuilder.and(
+						criteriaBuilder.equal(date, after.getDate()), 
+						criteriaBuilder.lessThan(id, after.getId())));
+	}
+	
+}
@@ -0,0 +1,64 @@
+package io.bottomfeeder.sourcefeed.entry;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.jdom2.Element;
+import org.jdom2.output.Format;
+import org.jdom2.output.XMLOutputter;
+import org.springframework.util.FastByteArrayOutputStream;
+
+import com.rometools.rome.feed.synd.SyndEntry;
+import com.rometools.rome.feed.synd.SyndFeedImpl;
+import com.rometools.rome.io.FeedException;
+import com.rometools.rome.io.SyndFeedOutput;
+
+import io.bottomfeeder.digest.feed.DigestFeedFormat;
+
+/**
+ * Renders individual feed entries into XML fragments (RSS item or Atom entry elements) 
+ * that can be embedded into digest feed documents as is.
+ * 
+ * Each fragment is a self-contained UTF-8 encoded element without XML declaration, 
+ * which declares all namespaces it uses.
+ */
+final class SourceFeedEntryRenderer {
+
+	private final SyndFeedOutput syndFeedOutput = new SyndFeedOutput();
+	private final XMLOutputter xmlOutputter = new XMLOutputter(Format.getRawFormat().setEncoding("UTF-8"));
+	
+	
+	byte[] renderFragment(SyndEntry syndEntry, DigestFeedFormat targetFormat) {
+		// Dummy feed for single entry
+		var entryFeed = new SyndFeedImpl();
+		entryFeed.setFeedType(targetFormat.type());
+		entryFeed.setTitle("");
+		entryFeed.setDescription("");
+		entryFeed.setLink("");
+		entryFeed.setEntries(List.of(syndEntry));
+		
+		try {
+			var root = syndFeedOutput.outputJDom(entryFeed).getRootElement();
+			var entryElement = switch (targetFormat) {
+				case ATOM_1_0 -> root.getChild("entry", root.getNamespace());
+				case RSS_2_0 -> root.getChild("channel").getChild("item");
+			};
+			return writeElement(entryElement.detach());
+		}
+		catch (IOException | FeedException e) {
+			throw new SourceFeedEntryException(e);
+		}
+	}
+	
+	
+	private byte[] writeElement(Element element) throws IOException {
+		var out = new FastByteArrayOutputStream();
+		try (var writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+			xmlOutputter.output(element, writer);
+		}
+		return out.toByteArrayUnsafe();
+	}
+	
+}
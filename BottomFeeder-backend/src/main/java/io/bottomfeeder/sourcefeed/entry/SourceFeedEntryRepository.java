@@ -1,44 +1,50 @@
 package io.bottomfeeder.sourcefeed.entry;
 
+import java.util.Collection;
 import java.util.List;
 
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 
-import io.bottomfeeder.digest.Digest;
 import io.bottomfeeder.sourcefeed.SourceFeed;
 
 /**
  * Spring Data repository for source feed entries.
  */
-interface SourceFeedEntryRepository extends JpaRepository<SourceFeedEntry, Long> {
+interface SourceFeedEntryRepository extends JpaRepository<SourceFeedEntry, Long>, SourceFeedEntryQueries {
 
 	List<SourceFeedEntry> findBySourceFeed(SourceFeed sourceFeed);
 	
 	
+	List<SourceFeedEntryState> findStatesBySourceFeedId(long sourceFeedId);
+	
+	
+	@Modifying(flushAutomatically = true)
+	@Query("delete SourceFeedEntry sourceFeedEntry where sourceFeedEntry.id in :ids")
+	int deleteByIds(Collection<Long> ids);
+	
+	
 	@Modifying(flushAutomatically = true, clearAutomatically = true)
 	@Query("delete SourceFeedEntry sourceFeedEntry where sourceFeedEntry.sourceFeed.id = :sourceFeedId")
 	int deleteBySourceFeedId(long sourceFeedId);
 	
 	
+	@Modifying(flushAutomatically = true)
+	@Query("update SourceFeedEntry sourceFeedEntry set sourceFeedEntry.digestId = :digestId where sourceFeedEntry.sourceFeed.id = :sourceFeedId")
+	int updateDigestIdBySourceFeedId(long sourceFeedId, long digestId);
+	
+	
+	@Modifying(flushAutomatically = true, clearAutomatically = true)
 	@Query("""
-			select 
-				sourceFeedEntry
-			from 
+			update 
 				SourceFeedEntry sourceFeedEntry 
+			set 
+				sourceFeedEntry.digestId = (
+					select sourceFeed.digest.id from SourceFeed sourceFeed where sourceFeed = sourceFeedEntry.sourceFeed) 
 			where 
-				sourceFeedEntry.sourceFeed.digest = :digest 
-			order by 
-				sourceFeedEntry.date desc
+				sourceFeedEntry.digestId is null
 			""")
-	List<SourceFeedEntry> findDigestFeedEntries(Digest digest, Pageable limit);
-	
-	
-	default List<SourceFeedEntry> findDigestFeedEntries(Digest digest) {
-		return findDigestFeedEntries(digest, PageRequest.of(0, digest.getMaxEntries()));
-	}
+	int updateMissingDigestIds();
 	
 }
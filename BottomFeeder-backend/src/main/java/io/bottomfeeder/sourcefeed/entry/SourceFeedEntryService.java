@@ -8,13 +8,22 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.DigestUtils;
 import org.springframework.util.FastByteArrayOutputStream;
 
 import com.rometools.rome.feed.synd.SyndEntry;
@@ -27,76 +36,200 @@ import com.rometools.rome.io.XmlReader;
 
 import io.bottomfeeder.digest.Digest;
 import io.bottomfeeder.digest.feed.DigestFeedFormat;
+import io.bottomfeeder.filter.Element;
 import io.bottomfeeder.filter.EntryFilterService;
+import io.bottomfeeder.filter.FilterableEntry;
 import io.bottomfeeder.sourcefeed.SourceFeed;
+import io.bottomfeeder.sourcefeed.SourceFeedRepository;
 
 /**
  * A service providing functionality for working with source feed's content represented
  * as {@code SourceFeedEntry} instances.
+ * 
+ * Digest entry filters are evaluated against element values extracted at ingest, so that only 
+ * the content of entries that pass the filters is parsed. Filters are also translated into query 
+ * criteria, so that most of the entries that cannot pass them are not loaded at all. Filtered digest 
+ * content is assembled by merging per-feed entry cursors, which stops as soon as enough entries pass.
+ * 
+ * Entries are pre-rendered at ingest into fragments for each digest feed format, and digest feed content
+ * is loaded as such fragments.
  */
 @Service
 public class SourceFeedEntryService {
 
 	private static final Logger logger = LoggerFactory.getLogger(SourceFeedEntryService.class);
+	private static final int MIN_CURSOR_BATCH_SIZE = 10;
+	private static final int MAX_CURSOR_BATCH_SIZE = 200;
 	
 	private final SourceFeedEntryRepository sourceFeedEntryRepository;
 	private final EntryFilterService entryFilterService;
+	private final SourceFeedRepository sourceFeedRepository;
 	private final SyndFeedInput syndFeedInput = new SyndFeedInput();
 	private final SyndFeedOutput syndFeedOutput = new SyndFeedOutput();
+	private final SourceFeedEntryRenderer entryRenderer = new SourceFeedEntryRenderer();
 
 	
 	public SourceFeedEntryService(
 			SourceFeedEntryRepository sourceFeedEntryRepository, 
-			EntryFilterService entryFilterService) {
+			EntryFilterService entryFilterService,
+			SourceFeedRepository sourceFeedRepository) {
 		this.sourceFeedEntryRepository = sourceFeedEntryRepository;
 		this.entryFilterService = entryFilterService;
+		this.sourceFeedRepository = sourceFeedRepository;
 	}
 
 	
-	@Transactional
-	public List<SyndEntry> loadDigestFeedContent(Digest digest, DigestFeedFormat targetFormat) {
+	/**
+	 * Loads content of digest feed, passing entry fragments pre-rendered in the target format 
+	 * to the consumer one at a time, from the most recent to the oldest.
+	 * 
+	 * Entries are read through date-ordered cursors fetching them in batches, so that only a bounded
+	 * number of entries is held in memory. When digest has entry filters, a cursor is opened over 
+	 * the entries of each digest's source feed, and the cursors are merged, applying the filter chain 
+	 * to merged entries until enough of them pass. Query selects candidate entries only, so the filter
+	 * chain is still applied to them.
+	 */
+	@Transactional(readOnly = true)
+	public void loadDigestFeedContent(Digest digest, DigestFeedFormat targetFormat, Consumer<byte[]> fragmentConsumer) {
+		var maxEntries = digest.getMaxEntries();
+		var initialBatchSize = Math.max(Math.min(maxEntries, MAX_CURSOR_BATCH_SIZE), MIN_CURSOR_BATCH_SIZE);
+		
 		var entryFilterChain = entryFilterService.getDigestEntryFilterChain(digest);
+		var openCursors = new ArrayList<SourceFeedEntryCursor>();
 		if (entryFilterChain == null) {
-			return sourceFeedEntryRepository.findDigestFeedEntries(digest).stream()
-					.map(sourceFeedEntry -> readSourceFeedEntryContent(sourceFeedEntry, targetFormat))
-					.filter(Objects::nonNull)
-					.collect(toList());
+			openCursors.add(new SourceFeedEntryCursor(
+					(after, limit) -> sourceFeedEntryRepository.findDigestFeedEntries(
+							digest.getId(), targetFormat, after, limit), 
+					initialBatchSize, MAX_CURSOR_BATCH_SIZE));
 		}
 		else {
-			return sourceFeedEntryRepository.findDigestFeedEntries(digest, Pageable.unpaged()).stream()
-					.map(sourceFeedEntry -> readSourceFeedEntryContent(sourceFeedEntry, targetFormat))
-					.filter(entryFilterChain)
-					.limit(digest.getMaxEntries())
-					.collect(toList());
+			var specification = entryFilterService.getDigestEntryFilterSpecification(
+					digest, new SourceFeedEntryElementMapping(targetFormat));
+			for (var sourceFeedId : sourceFeedRepository.findIdsByDigest(digest)) {
+				openCursors.add(new SourceFeedEntryCursor(
+						(after, limit) -> sourceFeedEntryRepository.findSourceFeedEntries(
+								sourceFeedId, specification, targetFormat, after, limit), 
+						initialBatchSize, MAX_CURSOR_BATCH_SIZE));
+			}
+		}
+		
+		// Cursors are ordered by their current entries, so only positioned cursors can be queued
+		var cursors = new PriorityQueue<>(SourceFeedEntryCursor.MOST_RECENT_FIRST);
+		for (var cursor : openCursors) {
+			if (cursor.advance())
+				cursors.add(cursor);
 		}
 		
+		var entryCount = 0;
+		while (entryCount < maxEntries && !cursors.isEmpty()) {
+			var cursor = cursors.poll();
+			var storedEntry = new StoredEntry(cursor.current(), targetFormat);
+			if (entryFilterChain == null || entryFilterChain.test(storedEntry)) {
+				var fragment = storedEntry.getFragment();
+				if (fragment != null) {
+					fragmentConsumer.accept(fragment);
+					entryCount++;
+				}
+			}
+			if (cursor.advance())
+				cursors.add(cursor);
+		}
 	}
 	
 	
+	/**
+	 * Replaces entries of source feed with entries created from new feed data according to current 
+	 * settings of source feed. Filters are read bypassing the filter chain cache, so that the caller
+	 * holding the lock on source feed gets the entries matching its settings as of the time of the call.
+	 */
 	@Transactional
-	public void replaceSourceFeedEntries(SyndFeed newFeedData, SourceFeed sourceFeed) {
+	public SourceFeedEntryMergeResult replaceSourceFeedEntries(SyndFeed newFeedData, SourceFeed sourceFeed) {
+		var newEntries = createSourceFeedEntries(newFeedData, sourceFeed, 
+				entryFilterService.loadSourceFeedEntryFilterChain(sourceFeed));
+		return mergeSourceFeedEntries(newEntries, sourceFeed);
+	}
+	
+	
+	public List<SourceFeedEntry> createSourceFeedEntries(SyndFeed newFeedData, SourceFeed sourceFeed) {
+		return createSourceFeedEntries(newFeedData, sourceFeed, entryFilterService.getSourceFeedEntryFilterChain(sourceFeed));
+	}
+	
+	
+	private List<SourceFeedEntry> createSourceFeedEntries(SyndFeed newFeedData, SourceFeed sourceFeed, 
+			Predicate<FilterableEntry> entryFilterChain) {
 		Objects.requireNonNull(newFeedData);
-		Objects.requireNonNull(sourceFeed.getId());
-		
-		deleteSourceFeedEntries(sourceFeed);
 		
 		var syndEntryStream = newFeedData.getEntries().stream();
 		
-		var entryFilterChain = entryFilterService.getSourceFeedEntryFilterChain(sourceFeed);
 		if (entryFilterChain != null)
-			syndEntryStream = syndEntryStream.filter(entryFilterChain);
-		
-		var maxEntries = sourceFeed.getMaxEntries();
-		if (maxEntries > 0)
-			syndEntryStream = syndEntryStream.limit(maxEntries);
+			syndEntryStream = syndEntryStream.filter(syndEntry -> entryFilterChain.test(FilterableEntry.of(syndEntry)));
 		
 		var feedType = newFeedData.getFeedType();
-		var sourceFeedEntries = syndEntryStream
+		var entryKeys = new HashSet<String>();
+		var sourceFeedEntryStream = syndEntryStream
 				.map(syndEntry -> createSourceFeedEntry(syndEntry, feedType, sourceFeed))
 				.filter(Objects::nonNull) // filter out entries without published and updated date
-				.collect(toList());
+				.filter(sourceFeedEntry -> entryKeys.add(sourceFeedEntry.getEntryKey())); // and duplicates
+		
+		// Limit is applied to stored entries, and the stream is lazy, so entries beyond the limit are not created
+		var maxEntries = sourceFeed.getMaxEntries();
+		if (maxEntries > 0)
+			sourceFeedEntryStream = sourceFeedEntryStream.limit(maxEntries);
+		
+		return sourceFeedEntryStream.collect(toList());
+	}
+	
+	
+	@Transactional
+	public SourceFeedEntryMergeResult mergeSourceFeedEntries(List<SourceFeedEntry> newEntries, SourceFeed sourceFeed) {
+		Objects.requireNonNull(sourceFeed.getId());
+		
+		var idsToDelete = new ArrayList<Long>();
+		var existingEntriesByKey = new HashMap<String, SourceFeedEntryState>();
+		for (var existingEntry : sourceFeedEntryRepository.findStatesBySourceFeedId(sourceFeed.getId())) {
+			// Entries without key (stored by previous versions) cannot be matched, so they are replaced
+			var entryKey = existingEntry.getEntryKey();
+			if (entryKey == null || existingEntriesByKey.putIfAbsent(entryKey, existingEntry) != null)
+				idsToDelete.add(existingEntry.getId());
+		}
 		
-		sourceFeedEntryRepository.saveAll(sourceFeedEntries);
+		// Entries may have been created before the source feed has been moved to another digest,
+		// so digest is always taken from the source feed as it is now
+		var digestId = sourceFeed.getDigest().getId();
+		var entriesToInsert = new ArrayList<SourceFeedEntry>();
+		var changedEntriesById = new HashMap<Long, SourceFeedEntry>();
+		var unchanged = 0;
+		for (var newEntry : newEntries) {
+			newEntry.setDigestId(digestId);
+			var existingEntry = existingEntriesByKey.remove(newEntry.getEntryKey());
+			if (existingEntry == null)
+				entriesToInsert.add(newEntry);
+			else if (hasSameContent(existingEntry, newEntry))
+				unchanged++;
+			else
+				changedEntriesById.put(existingEntry.getId(), newEntry);
+		}
+		existingEntriesByKey.values().forEach(vanishedEntry -> idsToDelete.add(vanishedEntry.getId()));
+		
+		if (!idsToDelete.isEmpty())
+			sourceFeedEntryRepository.deleteByIds(idsToDelete);
+		if (!changedEntriesById.isEmpty()) {
+			sourceFeedEntryRepository.findAllById(changedEntriesById.keySet()).forEach(existingEntry -> 
+					existingEntry.setContentData(changedEntriesById.get(existingEntry.getId())));
+		}
+		sourceFeedEntryRepository.saveAll(entriesToInsert);
+		
+		return new SourceFeedEntryMergeResult(entriesToInsert.size(), changedEntriesById.size(), 
+				idsToDelete.size(), unchanged);
+	}
+	
+	
+	private static boolean hasSameContent(SourceFeedEntryState existingEntry, SourceFeedEntry newEntry) {
+		// Entries stored without extracted element values or pre-rendered fragments are updated to get them
+		return newEntry.getDate().equals(existingEntry.getDate())
+				&& newEntry.getContentHash().equals(existingEntry.getContentHash())
+				&& existingEntry.getContentTruncated() != null
+				&& existingEntry.getFragmentsRendered() != null;
 	}
 
 
@@ -110,7 +243,19 @@ public class SourceFeedEntryService {
 	}
 	
 	
-	private SyndEntry readSourceFeedEntryContent(SourceFeedEntry sourceFeedEntry, DigestFeedFormat targetFormat) {
+	public void updateSourceFeedEntriesDigest(SourceFeed sourceFeed) {
+		sourceFeedEntryRepository.updateDigestIdBySourceFeedId(sourceFeed.getId(), sourceFeed.getDigest().getId());
+	}
+	
+	
+	@Transactional
+	public int updateMissingDigestIds() {
+		return sourceFeedEntryRepository.updateMissingDigestIds();
+	}
+	
+	
+	// Package-private for benchmarks
+	SyndEntry readSourceFeedEntryContent(SourceFeedEntry sourceFeedEntry, DigestFeedFormat targetFormat) {
 		try (var input = new ByteArrayInputStream(sourceFeedEntry.getContent())) {
 			var syndEntry = syndFeedInput.build(new XmlReader(input)).getEntries().get(0);
 			fixEntryDate(syndEntry, sourceFeedEntry, targetFormat);
@@ -147,8 +292,12 @@ public class SourceFeedEntryService {
 	private SourceFeedEntry createSourceFeedEntry(SyndEntry syndEntry, String feedType, SourceFeed sourceFeed) {
 		var date = getEntryDate(syndEntry);
 		if (date != null) {
-			var entryFeed = createEntryFeed(syndEntry, feedType);
-			return new SourceFeedEntry(date, getContentBytes(entryFeed), sourceFeed);
+			var content = getContentBytes(createEntryFeed(syndEntry, feedType));
+			var sourceFeedEntry = new SourceFeedEntry(getEntryKey(syndEntry, date), date, content, 
+					DigestUtils.md5DigestAsHex(content), sourceFeed);
+			setElementValues(sourceFeedEntry, syndEntry);
+			renderFragments(sourceFeedEntry, syndEntry);
+			return sourceFeedEntry;
 		}
 		else {
 			var message = format("Could not create source feed entry for SyndEntry instance "
@@ -160,7 +309,53 @@ public class SourceFeedEntryService {
 	}
 	
 	
-	private static SyndFeed createEntryFeed(SyndEntry syndEntry, String feedType) {
+	@SuppressWarnings("unchecked")
+	private static void setElementValues(SourceFeedEntry sourceFeedEntry, SyndEntry syndEntry) {
+		var filterableEntry = FilterableEntry.of(syndEntry);
+		sourceFeedEntry.setElementValues(
+				syndEntry.getTitle(), 
+				syndEntry.getLink(), 
+				syndEntry.getAuthor(), 
+				syndEntry.getUri(),
+				(List<String>)filterableEntry.getElementValue(Element.CATEGORIES),
+				(String)filterableEntry.getElementValue(Element.CONTENT),
+				toInstant(syndEntry.getPublishedDate()),
+				toInstant(syndEntry.getUpdatedDate()));
+	}
+	
+	
+	private void renderFragments(SourceFeedEntry sourceFeedEntry, SyndEntry syndEntry) {
+		var atomFragment = entryRenderer.renderFragment(syndEntry, DigestFeedFormat.ATOM_1_0);
+		
+		// Apply the same date fix as for content read for RSS output (see fixEntryDate), 
+		// on a copy, as the entry is shared with the parsed feed
+		var rssEntry = syndEntry;
+		if (syndEntry.getPublishedDate() == null) {
+			rssEntry = copyEntry(syndEntry);
+			rssEntry.setPublishedDate(syndEntry.getUpdatedDate());
+		}
+		var rssFragment = entryRenderer.renderFragment(rssEntry, DigestFeedFormat.RSS_2_0);
+		sourceFeedEntry.setFragments(rssFragment, atomFragment);
+	}
+	
+	
+	private static SyndEntry copyEntry(SyndEntry syndEntry) {
+		try {
+			return (SyndEntry)syndEntry.clone();
+		}
+		catch (CloneNotSupportedException e) {
+			throw new IllegalStateException("Failed to copy SyndEntry instance", e);
+		}
+	}
+	
+	
+	private static Instant toInstant(Date date) {
+		return date != null ? date.toInstant() : null;
+	}
+	
+	
+	// Package-private for benchmarks
+	static SyndFeed createEntryFeed(SyndEntry syndEntry, String feedType) {
 		// Dummy feed for single entry
 		var entryFeed = new SyndFeedImpl();
 		entryFeed.setFeedType(feedType);
@@ -172,7 +367,8 @@ public class SourceFeedEntryService {
 	}
 	
 	
-	private byte[] getContentBytes(SyndFeed entryFeed) {
+	// Package-private for benchmarks
+	byte[] getContentBytes(SyndFeed entryFeed) {
 		var out = new FastByteArrayOutputStream();
 		try (var writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
 			syndFeedOutput.output(entryFeed, writer);
@@ -184,6 +380,16 @@ public class SourceFeedEntryService {
 	}
 
 	
+	private static String getEntryKey(SyndEntry syndEntry, Instant date) {
+		// Entry URI corresponds to RSS guid or Atom id; if it's absent, fall back to the link,
+		// and then to the combination of title and date
+		var identity = StringUtils.firstNonBlank(syndEntry.getUri(), syndEntry.getLink());
+		if (identity == null)
+			identity = format("%s|%s", StringUtils.defaultString(syndEntry.getTitle()), date);
+		return DigestUtils.md5DigestAsHex(identity.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	
 	private static Instant getEntryDate(SyndEntry syndEntry) {
 		var date = syndEntry.getPublishedDate();
 		if (date == null) {
@@ -193,5 +399,67 @@ public class SourceFeedEntryService {
 		}
 		return date.toInstant();
 	}
+	
+	
+	/**
+	 * Stored source feed entry that is evaluated by digest entry filters.
+	 * Element values are taken from extracted data, if available; otherwise, the content is loaded 
+	 * and parsed once and reused both for filter evaluation and for the output.
+	 */
+	private final class StoredEntry implements FilterableEntry {
+		
+		private final SourceFeedEntry sourceFeedEntry;
+		private final DigestFeedFormat targetFormat;
+		private SyndEntry syndEntry;
+		private boolean contentRead;
+		
+		StoredEntry(SourceFeedEntry sourceFeedEntry, DigestFeedFormat targetFormat) {
+			this.sourceFeedEntry = sourceFeedEntry;
+			this.targetFormat = targetFormat;
+		}
+		
+		@Override
+		public Object getElementValue(Element element) {
+			if (!sourceFeedEntry.hasElementValue(element)) {
+				var filterableEntry = FilterableEntry.of(getSyndEntry());
+				return filterableEntry != null ? filterableEntry.getElementValue(element) : null;
+			}
+			
+			var value = sourceFeedEntry.getElementValue(element);
+			// Mirror the date fix applied to parsed content for RSS output (see fixEntryDate)
+			if (value == null && element == Element.PUBLISH_DATE && targetFormat == DigestFeedFormat.RSS_2_0)
+				value = sourceFeedEntry.getUpdatedDate();
+			return value;
+		}
+		
+		byte[] getFragment() {
+			var fragment = sourceFeedEntry.getFragment(targetFormat);
+			if (fragment == null) {
+				// Entries stored by previous versions have no fragments, so they are rendered on the fly
+				var syndEntry = getSyndEntry();
+				if (syndEntry != null) {
+					try {
+						fragment = entryRenderer.renderFragment(syndEntry, targetFormat);
+					}
+					catch (SourceFeedEntryException e) {
+						logger.error(format("Failed to render source feed entry %d", sourceFeedEntry.getId()), e);
+					}
+				}
+			}
+			return fragment;
+		}
+		
+		SyndEntry getSyndEntry() {
+			if (!contentRead) {
+				// Content is not loaded with entries read for digest feed, as most of them don't need it
+				if (sourceFeedEntry.getContent() == null)
+					sourceFeedEntry.setContent(sourceFeedEntryRepository.findContentById(sourceFeedEntry.getId()));
+				if (sourceFeedEntry.getContent() != null)
+					syndEntry = readSourceFeedEntryContent(sourceFeedEntry, targetFormat);
+				contentRead = true;
+			}
+			return syndEntry;
+		}
+	}
 
 }
@@ -0,0 +1,23 @@
+package io.bottomfeeder.sourcefeed.entry;
+
+import java.time.Instant;
+
+/**
+ * A projection of source feed entry containing only the properties needed to detect changes 
+ * of the entry between content updates, without loading the content itself.
+ */
+interface SourceFeedEntryState {
+
+	Long getId();
+	
+	String getEntryKey();
+	
+	Instant getDate();
+	
+	String getContentHash();
+	
+	Boolean getContentTruncated();
+	
+	Boolean getFragmentsRendered();
+	
+}
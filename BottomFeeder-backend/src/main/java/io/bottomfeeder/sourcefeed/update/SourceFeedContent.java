@@ -0,0 +1,18 @@
+package io.bottomfeeder.sourcefeed.update;
+
+import com.rometools.rome.feed.synd.SyndFeed;
+
+/**
+ * Contains the result of loading latest content for source feed: parsed feed data along
+ * with HTTP cache validators ({@code ETag} and {@code Last-Modified}) returned by the source.
+ * 
+ * For conditional load answered by the source with HTTP 304 (Not Modified) the feed data
+ * is absent, meaning that content previously loaded for the feed is still up to date.
+ */
+public record SourceFeedContent(SyndFeed feed, String etag, String lastModified) {
+
+	public boolean isModified() {
+		return feed != null;
+	}
+	
+}
@@ -2,16 +2,25 @@ package io.bottomfeeder.sourcefeed.update;
 
 import static java.util.Objects.requireNonNull;
 
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.net.http.HttpResponse.BodyHandlers;
 import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.concurrent.Callable;
 import java.util.concurrent.FutureTask;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
-import com.rometools.rome.feed.synd.SyndFeed;
+import org.apache.commons.lang3.StringUtils;
+
 import com.rometools.rome.io.SyndFeedInput;
 import com.rometools.rome.io.XmlReader;
 
@@ -23,17 +32,35 @@ import io.bottomfeeder.sourcefeed.SourceFeedException;
  * the source for specified source feed.
  * 
  * The task does not actually update the source feed entity, instead it returns latest 
- * content as {@code SyndFeed} instance upon successful completion, and additionaly
+ * content as {@code SourceFeedContent} instance upon successful completion, and additionaly
  * allows to set callback functions to be invoked on various stages of its execution.
+ * 
+ * When configured as conditional, the task sends cache validators stored for the source feed
+ * along with the request, so that unchanged content is neither downloaded nor parsed.
+ * 
+ * Loaders do not own an HTTP client, instead they borrow the application-wide shared instance,
+ * so that connections to source hosts are pooled and reused between loads.
+ * 
+ * Unsuccessful HTTP status is reported as {@code SourceFeedFetchException}, which carries
+ * the delay requested by source via {@code Retry-After} header, so that the caller is able to
+ * postpone further requests accordingly.
+ * 
+ * Fetch time, response status and size, and parse time are recorded to update metrics.
  */
-class SourceFeedContentLoader implements Callable<SyndFeed> {
-	// TODO use time-based cache to hold fetched feed content for short time
+class SourceFeedContentLoader implements Callable<SourceFeedContent> {
 
 	private static final Duration HTTP_REQUEST_TIMEOUT = Duration.ofSeconds(15);
 	
+	private static final int HTTP_NOT_MODIFIED = 304;
+	private static final int HTTP_SUCCESS_MIN = 200;
+	private static final int HTTP_SUCCESS_MAX = 299;
+	
 	private final SourceFeed sourceFeed;
+	private final HttpClient httpClient;
+	private final SourceFeedUpdateMetrics metrics;
+	private final boolean conditional;
 	private final Consumer<SourceFeed> onStart;
-	private final BiConsumer<SourceFeed, SyndFeed> onSuccess;
+	private final BiConsumer<SourceFeed, SourceFeedContent> onSuccess;
 	private final BiConsumer<SourceFeed, Throwable> onFailure;
 	private final Consumer<SourceFeed> onComplete;
 	
@@ -44,13 +71,23 @@ class SourceFeedContentLoader implements Callable<SyndFeed> {
 	static final class Builder {
 		
 		private final SourceFeed sourceFeed;
+		private final HttpClient httpClient;
+		private final SourceFeedUpdateMetrics metrics;
+		private boolean conditional;
 		private Consumer<SourceFeed> onStart = sourceFeed -> {};
-		private BiConsumer<SourceFeed, SyndFeed> onSuccess = (sourceFeed, updatedContent) -> {};
+		private BiConsumer<SourceFeed, SourceFeedContent> onSuccess = (sourceFeed, updatedContent) -> {};
 		private BiConsumer<SourceFeed, Throwable> onFailure = (sourceFeed, exception) -> {};
 		private Consumer<SourceFeed> onComplete = sourceFeed -> {};
 		
-		Builder(SourceFeed sourceFeed) {
+		Builder(SourceFeed sourceFeed, HttpClient httpClient, SourceFeedUpdateMetrics metrics) {
 			this.sourceFeed = requireNonNull(sourceFeed);
+			this.httpClient = requireNonNull(httpClient);
+			this.metrics = requireNonNull(metrics);
+		}
+		
+		Builder conditional(boolean conditional) {
+			this.conditional = conditional;
+			return this;
 		}
 		
 		Builder onStart(Consumer<SourceFeed> onStart) {
@@ -58,7 +95,7 @@ class SourceFeedContentLoader implements Callable<SyndFeed> {
 			return this;
 		}
 		
-		Builder onSuccess(BiConsumer<SourceFeed, SyndFeed> onSuccess) {
+		Builder onSuccess(BiConsumer<SourceFeed, SourceFeedContent> onSuccess) {
 			this.onSuccess = requireNonNull(onSuccess);
 			return this;
 		}
@@ -77,7 +114,7 @@ class SourceFeedContentLoader implements Callable<SyndFeed> {
 			return new SourceFeedContentLoader(this);
 		}
 		
-		FutureTask<SyndFeed> buildFutureTask() {
+		FutureTask<SourceFeedContent> buildFutureTask() {
 			return new FutureTask<>(build());
 		}
 	}
@@ -85,6 +122,9 @@ class SourceFeedContentLoader implements Callable<SyndFeed> {
 	
 	private SourceFeedContentLoader(Builder builder) {
 		this.sourceFeed = builder.sourceFeed;
+		this.httpClient = builder.httpClient;
+		this.metrics = builder.metrics;
+		this.conditional = builder.conditional;
 		this.onStart = builder.onStart;
 		this.onSuccess = builder.onSuccess;
 		this.onFailure = builder.onFailure;
@@ -93,19 +133,44 @@ class SourceFeedContentLoader implements Callable<SyndFeed> {
 
 
 	@Override
-	public SyndFeed call() {
+	public SourceFeedContent call() {
 		onStart.accept(sourceFeed);
 		
-		var httpClient = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.ALWAYS).build();
-		var request = HttpRequest.newBuilder(sourceFeed.getURI()).timeout(HTTP_REQUEST_TIMEOUT).build();
-		
-		// TODO handle HTTP 429/503 using exponential backoff or similar strategy
-		try (var input = httpClient.send(request, BodyHandlers.ofInputStream()).body()) {
-			var newFeedData = new SyndFeedInput().build(new XmlReader(input));
-			onSuccess.accept(sourceFeed, newFeedData);
-			return newFeedData;
+		var fetchStartTime = System.nanoTime();
+		var responseReceived = false;
+		try {
+			var response = httpClient.send(createRequest(), BodyHandlers.ofInputStream());
+			responseReceived = true;
+			metrics.recordFetch(sourceFeed, System.nanoTime() - fetchStartTime, response.statusCode());
+			try (var input = new CountingInputStream(response.body())) {
+				var statusCode = response.statusCode();
+				SourceFeedContent content;
+				if (conditional && statusCode == HTTP_NOT_MODIFIED) {
+					// Validators are allowed to be omitted or updated in 304 response
+					content = new SourceFeedContent(null,
+							getHeader(response, "ETag", sourceFeed.getEtag()),
+							getHeader(response, "Last-Modified", sourceFeed.getLastModified()));
+				}
+				else if (statusCode < HTTP_SUCCESS_MIN || statusCode > HTTP_SUCCESS_MAX) {
+					throw new SourceFeedFetchException(String.format("Source responded with HTTP status %d", statusCode), 
+							statusCode, getRetryAfter(response));
+				}
+				else {
+					var parseStartTime = System.nanoTime();
+					var newFeedData = new SyndFeedInput().build(new XmlReader(input));
+					metrics.recordParse(System.nanoTime() - parseStartTime);
+					content = new SourceFeedContent(newFeedData,
+							getHeader(response, "ETag", null),
+							getHeader(response, "Last-Modified", null));
+				}
+				metrics.recordResponseSize(sourceFeed, input.getCount());
+				onSuccess.accept(sourceFeed, content);
+				return content;
+			}
 		}
 		catch (Exception exception) {
+			if (!responseReceived)
+				metrics.recordFetchError(sourceFeed, System.nanoTime() - fetchStartTime);
 			if (exception instanceof InterruptedException)
 				Thread.currentThread().interrupt();	
 			onFailure.accept(sourceFeed, exception);
@@ -118,4 +183,81 @@ class SourceFeedContentLoader implements Callable<SyndFeed> {
 		}
 	}
 	
+	
+	private HttpRequest createRequest() {
+		var requestBuilder = HttpRequest.newBuilder(sourceFeed.getURI()).timeout(HTTP_REQUEST_TIMEOUT);
+		if (conditional) {
+			var etag = sourceFeed.getEtag();
+			if (etag != null)
+				requestBuilder.header("If-None-Match", etag);
+			var lastModified = sourceFeed.getLastModified();
+			if (lastModified != null)
+				requestBuilder.header("If-Modified-Since", lastModified);
+		}
+		return requestBuilder.build();
+	}
+	
+	
+	private static Duration getRetryAfter(HttpResponse<?> response) {
+		// Retry-After value is either a number of seconds or HTTP date
+		var retryAfter = StringUtils.trimToNull(getHeader(response, "Retry-After", null));
+		if (retryAfter == null)
+			return null;
+		try {
+			if (StringUtils.isNumeric(retryAfter))
+				return Duration.ofSeconds(Long.parseLong(retryAfter));
+			var retryDate = ZonedDateTime.parse(retryAfter, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+			var delay = Duration.between(Instant.now(), retryDate);
+			return delay.isNegative() ? Duration.ZERO : delay;
+		}
+		catch (NumberFormatException | DateTimeParseException exception) {
+			return null;
+		}
+	}
+	
+	
+	private static String getHeader(HttpResponse<?> response, String name, String defaultValue) {
+		return response.headers().firstValue(name).orElse(defaultValue);
+	}
+	
+	
+	/**
+	 * Input stream counting the number of bytes read from underlying stream.
+	 */
+	private static final class CountingInputStream extends FilterInputStream {
+		
+		private long count;
+		
+		CountingInputStream(InputStream input) {
+			super(input);
+		}
+		
+		@Override
+		public int read() throws IOException {
+			var result = super.read();
+			if (result >= 0)
+				count++;
+			return result;
+		}
+		
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			var result = super.read(buffer, offset, length);
+			if (result > 0)
+				count += result;
+			return result;
+		}
+		
+		@Override
+		public long skip(long n) throws IOException {
+			var result = super.skip(n);
+			count += result;
+			return result;
+		}
+		
+		long getCount() {
+			return count;
+		}
+	}
+	
 }
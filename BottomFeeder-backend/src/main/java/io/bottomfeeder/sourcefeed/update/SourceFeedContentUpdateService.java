@@ -1,28 +1,40 @@
 package io.bottomfeeder.sourcefeed.update;
 
 import static java.lang.String.format;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.Scheduled;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 
-import com.rometools.rome.feed.synd.SyndFeed;
-
+import io.bottomfeeder.digest.DigestChangeEvent;
 import io.bottomfeeder.sourcefeed.SourceFeed;
 import io.bottomfeeder.sourcefeed.SourceFeedException;
 import io.bottomfeeder.sourcefeed.SourceFeedRepository;
+import io.bottomfeeder.sourcefeed.SourceFeedService;
 import io.bottomfeeder.sourcefeed.entry.SourceFeedEntryService;
+import io.bottomfeeder.util.TimedCache;
+import io.bottomfeeder.util.TimedCacheMetrics;
 import io.bottomfeeder.util.TransactionalRunner;
+import io.micrometer.core.instrument.MeterRegistry;
 
 /**
  * A service responsible for updating source feeds with latest version of the content.
@@ -31,6 +43,17 @@ import io.bottomfeeder.util.TransactionalRunner;
  * 
  * Scheduled update for each feed is triggered by scheduled task running at fixed time
  * interval, taking into account source feed's configured content update interval.
+ * Failed scheduled updates are retried with exponential backoff and jitter, or no earlier
+ * than the time requested by source with {@code Retry-After} header, so that throttled or
+ * unavailable sources are not hit on every scheduler run.
+ * 
+ * Source feeds due for scheduled update are grouped by their normalized source into upstream 
+ * feeds, each of which is fetched and parsed once, and the resulting content is then applied 
+ * to every subscribing source feed according to its own filters and entry limit.
+ * 
+ * Recently loaded content is kept in a short-lived cache keyed by normalized source, which 
+ * is consulted by on-demand loads unless refresh is explicitly requested. Cached feeds are 
+ * shared between callers and must be treated as read-only.
  */
 @Service
 public class SourceFeedContentUpdateService {
@@ -39,24 +62,46 @@ public class SourceFeedContentUpdateService {
 	
 	private final SourceFeedRepository sourceFeedRepository;
 	private final SourceFeedEntryService sourceFeedEntryService;
-	private final ThreadPoolTaskExecutor taskExecutor;
+	private final SourceFeedFetchScheduler fetchScheduler;
+	private final HttpClient httpClient;
+	private final SourceFeedUpdateMetrics updateMetrics;
 	private final TransactionalRunner transactionalRunner;
+	private final ApplicationEventPublisher eventPublisher;
 	private final boolean scheduledUpdateEnabled;
+	private final Duration initialRetryDelay;
+	private final Duration maxRetryDelay;
+	
+	private final TimedCache<String, SourceFeedContent> contentCache;
 	
-	private final ConcurrentHashMap<Long, FutureTask<SyndFeed>> updaters = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<Long, FutureTask<SourceFeedContent>> updaters = new ConcurrentHashMap<>();
 
 	
 	public SourceFeedContentUpdateService(
 			SourceFeedRepository sourceFeedRepository,
 			SourceFeedEntryService sourceFeedEntryService,
-			ThreadPoolTaskExecutor taskExecutor, 
+			SourceFeedFetchScheduler fetchScheduler, 
+			HttpClient httpClient,
+			SourceFeedUpdateMetrics updateMetrics,
 			TransactionalRunner transactionalRunner, 
-			@Value("${bf.scheduler.source-feed-update-enabled:true}") boolean scheduledUpdateEnabled) {
+			ApplicationEventPublisher eventPublisher,
+			@Value("${bf.scheduler.source-feed-update-enabled:true}") boolean scheduledUpdateEnabled,
+			@Value("${bf.scheduler.backoff.initial-delay-minutes:5}") long initialRetryDelayMinutes,
+			@Value("${bf.scheduler.backoff.max-delay-minutes:1440}") long maxRetryDelayMinutes,
+			@Value("${bf.content-cache.max-size:500}") int contentCacheMaxSize,
+			@Value("${bf.content-cache.ttl-seconds:120}") long contentCacheTimeToLiveSeconds,
+			MeterRegistry meterRegistry) {
 		this.sourceFeedRepository = sourceFeedRepository;
 		this.sourceFeedEntryService = sourceFeedEntryService;
-		this.taskExecutor = taskExecutor;
+		this.fetchScheduler = fetchScheduler;
+		this.httpClient = httpClient;
+		this.updateMetrics = updateMetrics;
 		this.transactionalRunner = transactionalRunner;
+		this.eventPublisher = eventPublisher;
 		this.scheduledUpdateEnabled = scheduledUpdateEnabled;
+		this.initialRetryDelay = Duration.ofMinutes(initialRetryDelayMinutes);
+		this.maxRetryDelay = Duration.ofMinutes(Math.max(maxRetryDelayMinutes, initialRetryDelayMinutes));
+		this.contentCache = new TimedCache<>(contentCacheMaxSize, Duration.ofSeconds(contentCacheTimeToLiveSeconds));
+		new TimedCacheMetrics("source-feed-content", contentCache::getStats).bindTo(meterRegistry);
 	}
 
 
@@ -67,48 +112,100 @@ public class SourceFeedContentUpdateService {
 			
 			sourceFeedRepository.findAll().stream()
 				.filter(this::isReadyForUpdate)
-				.forEach(this::runScheduledFeedUpdate);
+				.collect(groupingBy(sourceFeed -> SourceFeedService.normalizeSource(sourceFeed.getSource()), 
+						LinkedHashMap::new, toList()))
+				.values()
+				.forEach(this::runScheduledUpstreamFeedUpdate);
 		}
 	}
 
 	
-	public SyndFeed loadLatestContent(SourceFeed sourceFeed) {
-		return sourceFeed.getId() == null 
-				? loadLatestContentForNewFeed(sourceFeed) : loadLatestContentForExistingFeed(sourceFeed);
+	public SourceFeedContent loadLatestContent(SourceFeed sourceFeed, boolean refresh) {
+		var cacheKey = getContentCacheKey(sourceFeed);
+		if (!refresh) {
+			var cachedContent = contentCache.get(cacheKey);
+			if (cachedContent != null) {
+				logger.info(format("Using cached content for %s", getFeedInfo(sourceFeed)));
+				return cachedContent;
+			}
+		}
+		
+		SourceFeedContent content;
+		if (sourceFeed.getId() == null) {
+			content = loadLatestContentUnconditionally(sourceFeed);
+		}
+		else {
+			content = loadLatestContentForExistingFeed(sourceFeed);
+			// Joined scheduled update was answered with "not modified", which gives
+			// no content to the caller, so the content has to be loaded unconditionally 
+			if (!content.isModified())
+				content = loadLatestContentUnconditionally(sourceFeed);
+		}
+		contentCache.put(cacheKey, content);
+		return content;
 	}
-
+	
 	
 	public void cancelUpdate(long sourceFeedId) {
 		var updater = updaters.remove(sourceFeedId);
 		if (updater != null) {
-			logger.info(format("Cancelling update for source feed ID: %d", sourceFeedId));
-			updater.cancel(true);
+			if (updaters.containsValue(updater)) {
+				// The update is shared with other source feeds, so it keeps running, but its result
+				// is no longer applied to this feed
+				logger.info(format("Detaching source feed ID: %d from shared update", sourceFeedId));
+			}
+			else {
+				logger.info(format("Cancelling update for source feed ID: %d", sourceFeedId));
+				updater.cancel(true);
+			}
 		}
 	}
 	
 	
-	private void runScheduledFeedUpdate(SourceFeed sourceFeed) {
-		var updater = updaters.computeIfAbsent(sourceFeed.getId(), id -> createScheduledUpdateTask(sourceFeed));
-		taskExecutor.execute(updater);
+	private void runScheduledUpstreamFeedUpdate(List<SourceFeed> sourceFeeds) {
+		// Feeds with an updater already queued or running are skipped, so that no duplicate
+		// tasks are occupying host's fetch slots
+		var subscribers = sourceFeeds.stream()
+				.filter(sourceFeed -> !updaters.containsKey(sourceFeed.getId()))
+				.collect(toList());
+		if (subscribers.isEmpty())
+			return;
+		
+		var upstreamFeedUpdate = new UpstreamFeedUpdate(subscribers);
+		var registered = false;
+		for (var sourceFeed : subscribers)
+			registered |= updaters.putIfAbsent(sourceFeed.getId(), upstreamFeedUpdate.task) == null;
+		if (registered)
+			fetchScheduler.submit(getHost(subscribers.get(0)), upstreamFeedUpdate.task);
 	}
 	
 	
-	private SyndFeed loadLatestContentForNewFeed(SourceFeed sourceFeed) {
-		return new SourceFeedContentLoader.Builder(sourceFeed)
+	private static String getContentCacheKey(SourceFeed sourceFeed) {
+		return SourceFeedService.normalizeSource(sourceFeed.getSource());
+	}
+	
+	
+	private static String getHost(SourceFeed sourceFeed) {
+		return Objects.requireNonNullElse(sourceFeed.getURI().getHost(), "");
+	}
+	
+	
+	private SourceFeedContent loadLatestContentUnconditionally(SourceFeed sourceFeed) {
+		return new SourceFeedContentLoader.Builder(sourceFeed, httpClient, updateMetrics)
 				.onStart(this::reportOnDemandContentLoadStart)
 				.build()
 				.call();
 	}
 	
 	
-	private SyndFeed loadLatestContentForExistingFeed(SourceFeed sourceFeed) {
+	private SourceFeedContent loadLatestContentForExistingFeed(SourceFeed sourceFeed) {
 		try {
 			// When there is an executing updater task for this feed, we don't start a new one,
 			// instead we are joining in and wait for shared result to be available.
 			// It is caller's responsibility to ensure that this result is still relevant
 			// (i.e. that feed's source property has not changed).
 			var updater = updaters.computeIfAbsent(sourceFeed.getId(), id -> {
-				return new SourceFeedContentLoader.Builder(sourceFeed)
+				return new SourceFeedContentLoader.Builder(sourceFeed, httpClient, updateMetrics)
 						.onStart(this::reportOnDemandContentLoadStart)
 						.onComplete(this::removeUpdater)
 						.buildFutureTask();
@@ -132,19 +229,65 @@ public class SourceFeedContentUpdateService {
 	}
 	
 	
-	private FutureTask<SyndFeed> createScheduledUpdateTask(SourceFeed sourceFeed) {
-		return new SourceFeedContentLoader.Builder(sourceFeed)
-				.onStart(this::reportScheduledUpdateStart)
-				.onSuccess(this::saveUpdatedContent)
-				.onFailure(this::reportUpdateError)
-				.onComplete(this::removeUpdater)
-				.buildFutureTask();	
-	}
-
-	
-	private void reportScheduledUpdateStart(SourceFeed sourceFeed) {
-		ensureHasId(sourceFeed);
-		logger.info(format("Running scheduled update for %s", getFeedInfo(sourceFeed)));
+	/**
+	 * Scheduled update of an upstream feed, i.e. a group of source feeds sharing the same source.
+	 * The content is loaded once using the first subscriber's source and then applied to each 
+	 * subscriber that is still mapped to this update's task.
+	 */
+	private final class UpstreamFeedUpdate {
+		
+		private final List<SourceFeed> subscribers;
+		private final FutureTask<SourceFeedContent> task;
+		
+		UpstreamFeedUpdate(List<SourceFeed> subscribers) {
+			this.subscribers = subscribers;
+			
+			// Conditional request only makes sense if subscribers' validators describe the same content
+			var sourceFeed = subscribers.get(0);
+			var conditional = subscribers.stream().allMatch(subscriber -> hasSameContentValidators(sourceFeed, subscriber));
+			
+			this.task = new SourceFeedContentLoader.Builder(sourceFeed, httpClient, updateMetrics)
+					.conditional(conditional)
+					.onStart(this::reportStart)
+					.onSuccess((upstreamFeed, content) -> {
+						if (content.isModified())
+							contentCache.put(getContentCacheKey(upstreamFeed), content);
+						forEachSubscriber(subscriber -> {
+							try {
+								saveUpdatedContent(subscriber, content);
+							}
+							catch (RuntimeException exception) {
+								handleUpdateError(subscriber, exception, ThreadLocalRandom.current().nextDouble());
+							}
+						});
+					})
+					.onFailure((upstreamFeed, exception) -> {
+						// Shared jitter keeps subscribers' retries aligned, so they are still fetched together
+						var jitter = ThreadLocalRandom.current().nextDouble();
+						forEachSubscriber(subscriber -> handleUpdateError(subscriber, exception, jitter));
+					})
+					.onComplete(upstreamFeed -> this.subscribers.forEach(this::removeUpdater))
+					.buildFutureTask();
+		}
+		
+		private void reportStart(SourceFeed sourceFeed) {
+			ensureHasId(sourceFeed);
+			if (subscribers.size() == 1)
+				logger.info(format("Running scheduled update for %s", getFeedInfo(sourceFeed)));
+			else
+				logger.info(format("Running scheduled update for %s shared by %d source feeds", 
+						getFeedInfo(sourceFeed), subscribers.size()));
+		}
+		
+		private void forEachSubscriber(Consumer<SourceFeed> action) {
+			subscribers.stream().filter(subscriber -> updaters.get(subscriber.getId()) == task).forEach(action);
+		}
+		
+		private void removeUpdater(SourceFeed sourceFeed) {
+			ensureHasId(sourceFeed);
+			if (updaters.remove(sourceFeed.getId(), task))
+				logger.info(format("Removing updater for %s from list of running updaters", getFeedInfo(sourceFeed)));
+		}
 	}
 	
 	
@@ -158,6 +301,52 @@ public class SourceFeedContentUpdateService {
 	}
 	
 	
+	private void handleUpdateError(SourceFeed sourceFeed, Throwable exception, double jitter) {
+		reportUpdateError(sourceFeed, exception);
+		
+		// Cancelled updates are not counted as failures
+		ensureHasId(sourceFeed);
+		if (exception instanceof InterruptedException || !updaters.containsKey(sourceFeed.getId()))
+			return;
+		
+		try {
+			transactionalRunner.run(() -> {
+				lockSourceFeed(sourceFeed).ifPresent(currentSourceFeed -> {
+					var failureCount = currentSourceFeed.getFailureCount() + 1;
+					var nextUpdateDate = Instant.now().plus(getRetryDelay(failureCount, exception, jitter));
+					currentSourceFeed.setFailureCount(failureCount);
+					currentSourceFeed.setNextUpdateDate(nextUpdateDate);
+					sourceFeedRepository.save(currentSourceFeed);
+					
+					logger.info(format("Next update for %s is postponed until %s (consecutive failures: %d)", 
+							getFeedInfo(currentSourceFeed), nextUpdateDate, failureCount));
+				});
+			});
+		}
+		catch (Exception saveException) {
+			logger.error(format("Failed to save update failure state for %s", getFeedInfo(sourceFeed)), saveException);
+		}
+	}
+	
+	
+	private Duration getRetryDelay(int failureCount, Throwable exception, double jitter) {
+		// Exponential backoff with "equal jitter": random delay in the upper half of the backoff interval
+		var backoffMillis = initialRetryDelay.toMillis() << Math.min(failureCount - 1, 20);
+		backoffMillis = Math.min(backoffMillis, maxRetryDelay.toMillis());
+		var retryDelay = Duration.ofMillis(backoffMillis / 2 + (long) (jitter * (backoffMillis / 2)));
+		
+		// Source-requested delay takes precedence over shorter backoff, but is still capped
+		if (exception instanceof SourceFeedFetchException fetchException && fetchException.getRetryAfter() != null) {
+			var retryAfter = fetchException.getRetryAfter();
+			if (retryAfter.compareTo(maxRetryDelay) > 0)
+				retryAfter = maxRetryDelay;
+			if (retryAfter.compareTo(retryDelay) > 0)
+				retryDelay = retryAfter;
+		}
+		return retryDelay;
+	}
+	
+	
 	private static String getFeedInfo(SourceFeed sourceFeed) {
 		var id = sourceFeed.getId();
 		var source = sourceFeed.getSource();
@@ -165,24 +354,82 @@ public class SourceFeedContentUpdateService {
 	}
 	
 	
-	private void saveUpdatedContent(SourceFeed sourceFeed, SyndFeed newFeedData) {
+	private void saveUpdatedContent(SourceFeed sourceFeed, SourceFeedContent content) {
 		ensureHasId(sourceFeed);
 		if (updaters.containsKey(sourceFeed.getId())) {
+			// Prepare new entries before acquiring the lock on source feed to keep it held 
+			// only for the time of actually writing the changes. They are valid only if entry 
+			// settings have not changed since the update has started, otherwise entries are rebuilt
+			// under the lock according to current settings
+			var newEntries = content.isModified() 
+					? sourceFeedEntryService.createSourceFeedEntries(content.feed(), sourceFeed) : null;
+			
 			transactionalRunner.run(() -> {
-				sourceFeedRepository.findAndLockById(sourceFeed.getId()).ifPresent(currentSourceFeed -> {
-					sourceFeedEntryService.replaceSourceFeedEntries(newFeedData, currentSourceFeed);
-					
-					currentSourceFeed.setAbbreviatedTitle(newFeedData.getTitle());
-					currentSourceFeed.setContentUpdateDate(Instant.now());
-					sourceFeedRepository.save(currentSourceFeed);
-					
-					logger.info(format("Updated %s with latest data", getFeedInfo(currentSourceFeed)));
+				lockSourceFeed(sourceFeed).ifPresent(currentSourceFeed -> {
+					// Content validators also change when content has been updated concurrently (on demand)
+					var settingsChanged = !hasSameEntrySettings(sourceFeed, currentSourceFeed)
+							|| !hasSameContentValidators(sourceFeed, currentSourceFeed);
+					if (content.isModified()) {
+						var newFeedData = content.feed();
+						var mergeResult = settingsChanged
+								? sourceFeedEntryService.replaceSourceFeedEntries(newFeedData, currentSourceFeed)
+								: sourceFeedEntryService.mergeSourceFeedEntries(newEntries, currentSourceFeed);
+						updateMetrics.recordMergeResult(mergeResult);
+						currentSourceFeed.setAbbreviatedTitle(newFeedData.getTitle());
+						saveContentState(currentSourceFeed, content);
+						if (mergeResult.hasChanges())
+							eventPublisher.publishEvent(new DigestChangeEvent(currentSourceFeed.getDigest(), false));
+						
+						logger.info(format("Updated %s with latest data (entries inserted: %d, updated: %d, "
+								+ "deleted: %d, unchanged: %d)", getFeedInfo(currentSourceFeed), mergeResult.inserted(), 
+								mergeResult.updated(), mergeResult.deleted(), mergeResult.unchanged()));
+					}
+					else if (!settingsChanged) {
+						saveContentState(currentSourceFeed, content);
+						
+						logger.info(format("Content of %s has not been modified since last update", 
+								getFeedInfo(currentSourceFeed)));
+					}
+					else if (currentSourceFeed.getFailureCount() > 0) {
+						// "Not modified" response is no longer relevant as feed settings have changed while 
+						// the update was running, so the content will be fully reloaded on next update.
+						// Still, the source has responded successfully, so the failure state is reset
+						currentSourceFeed.clearFailureState();
+						sourceFeedRepository.save(currentSourceFeed);
+					}
 				});
 			});
 		}
 	}
 	
 	
+	private Optional<SourceFeed> lockSourceFeed(SourceFeed sourceFeed) {
+		return updateMetrics.recordLockWait(() -> sourceFeedRepository.findAndLockById(sourceFeed.getId()));
+	}
+	
+	
+	private void saveContentState(SourceFeed sourceFeed, SourceFeedContent content) {
+		sourceFeed.setContentValidators(content.etag(), content.lastModified());
+		sourceFeed.setContentUpdateDate(Instant.now());
+		sourceFeed.clearFailureState();
+		sourceFeedRepository.save(sourceFeed);
+	}
+	
+	
+	private static boolean hasSameEntrySettings(SourceFeed sourceFeed1, SourceFeed sourceFeed2) {
+		// Max entries and digest are compared too, in case they have been changed without registering the change
+		return sourceFeed1.getEntrySettingsVersion() == sourceFeed2.getEntrySettingsVersion()
+				&& sourceFeed1.getMaxEntries() == sourceFeed2.getMaxEntries()
+				&& sourceFeed1.getDigest().getId().equals(sourceFeed2.getDigest().getId());
+	}
+	
+	
+	private static boolean hasSameContentValidators(SourceFeed sourceFeed1, SourceFeed sourceFeed2) {
+		return Objects.equals(sourceFeed1.getEtag(), sourceFeed2.getEtag())
+				&& Objects.equals(sourceFeed1.getLastModified(), sourceFeed2.getLastModified());
+	}
+	
+	
 	private void removeUpdater(SourceFeed sourceFeed) {
 		ensureHasId(sourceFeed);
 		logger.info(format("Removing updater for %s from list of running updaters", getFeedInfo(sourceFeed)));
@@ -191,6 +438,10 @@ public class SourceFeedContentUpdateService {
 
 
 	private boolean isReadyForUpdate(SourceFeed sourceFeed) {
+		var nextUpdateDate = sourceFeed.getNextUpdateDate();
+		if (nextUpdateDate != null && Instant.now().isBefore(nextUpdateDate))
+			return false;
+		
 		var lastUpdateDate = sourceFeed.getContentUpdateDate();
 		return lastUpdateDate == null
 				|| ChronoUnit.MINUTES.between(lastUpdateDate, Instant.now()) >= sourceFeed.getContentUpdateInterval();
@@ -0,0 +1,31 @@
+package io.bottomfeeder.sourcefeed.update;
+
+import java.time.Duration;
+
+import io.bottomfeeder.sourcefeed.SourceFeedException;
+
+/**
+ * Exception thrown when the source of a feed responds with unsuccessful HTTP status.
+ * Carries the status code and the delay requested by source with {@code Retry-After} header, if any.
+ */
+@SuppressWarnings("serial")
+class SourceFeedFetchException extends SourceFeedException {
+
+	private final int statusCode;
+	private final Duration retryAfter;
+	
+	SourceFeedFetchException(String message, int statusCode, Duration retryAfter) {
+		super(message);
+		this.statusCode = statusCode;
+		this.retryAfter = retryAfter;
+	}
+
+	int getStatusCode() {
+		return statusCode;
+	}
+
+	Duration getRetryAfter() {
+		return retryAfter;
+	}
+	
+}
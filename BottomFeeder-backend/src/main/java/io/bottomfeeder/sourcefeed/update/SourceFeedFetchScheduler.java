@@ -0,0 +1,252 @@
+package io.bottomfeeder.sourcefeed.update;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Schedules execution of source feed fetch tasks on the fetch executor, enforcing politeness 
+ * towards source hosts.
+ * 
+ * Submitted tasks are queued per host and dispatched in round-robin order across hosts, so that
+ * a host with many feeds does not hold up fetching from the other hosts. For each host, the number
+ * of concurrently running tasks is limited, and consecutive task starts are spaced by a minimum 
+ * interval. The total number of running tasks is limited as well, so that pending tasks wait in
+ * host queues, where fair ordering applies, rather than in executor's own queue.
+ * 
+ * Host queues are removed once they are idle, i.e. have no pending or running tasks, and the minimum 
+ * interval since the last task start has passed, so that the state is kept only for hosts being fetched.
+ * 
+ * All scheduling state is confined to a single dispatcher thread. Once the fetch executor is shut down,
+ * no more tasks are dispatched.
+ */
+@Component
+class SourceFeedFetchScheduler implements DisposableBean {
+
+	private static final Logger logger = LoggerFactory.getLogger(SourceFeedFetchScheduler.class);
+	
+	private final ThreadPoolTaskExecutor taskExecutor;
+	private final int maxConcurrentFetches;
+	private final int maxConcurrentFetchesPerHost;
+	private final long hostMinIntervalNanos;
+	
+	private final ScheduledExecutorService dispatcher;
+	private final AtomicInteger pendingFetchCount = new AtomicInteger();
+	
+	// Accessed only from dispatcher thread
+	private final Map<String, HostQueue> hostQueues = new HashMap<>();
+	private final Deque<HostQueue> hostRotation = new ArrayDeque<>();
+	private int runningFetchCount;
+	private ScheduledFuture<?> delayedDispatch;
+	private boolean executorShutDown;
+	
+	
+	/**
+	 * Pending tasks and fetch state for a single host.
+	 */
+	private static final class HostQueue {
+		
+		private final String host;
+		private final Deque<FutureTask<?>> tasks = new ArrayDeque<>();
+		private int runningFetchCount;
+		private long nextStartTime;
+		
+		HostQueue(String host, long now) {
+			this.host = host;
+			this.nextStartTime = now;
+		}
+		
+		boolean isIdle() {
+			return tasks.isEmpty() && runningFetchCount == 0;
+		}
+	}
+	
+	
+	public SourceFeedFetchScheduler(
+			@Qualifier("sourceFeedFetchExecutor") ThreadPoolTaskExecutor taskExecutor,
+			@Value("${bf.scheduler.fetch.max-concurrent-fetches:5}") int maxConcurrentFetches,
+			@Value("${bf.scheduler.fetch.max-concurrent-fetches-per-host:2}") int maxConcurrentFetchesPerHost,
+			@Value("${bf.scheduler.fetch.host-min-interval-millis:1000}") long hostMinIntervalMillis) {
+		if (maxConcurrentFetches < 1 || maxConcurrentFetchesPerHost < 1 || hostMinIntervalMillis < 0)
+			throw new IllegalArgumentException("Invalid source feed fetch scheduler settings");
+		
+		this.taskExecutor = taskExecutor;
+		this.maxConcurrentFetches = maxConcurrentFetches;
+		this.maxConcurrentFetchesPerHost = maxConcurrentFetchesPerHost;
+		this.hostMinIntervalNanos = Duration.ofMillis(hostMinIntervalMillis).toNanos();
+		
+		var threadFactory = new CustomizableThreadFactory("BF-Fetch-Dispatcher-");
+		threadFactory.setDaemon(true);
+		this.dispatcher = Executors.newSingleThreadScheduledExecutor(threadFactory);
+	}
+	
+	
+	/**
+	 * Queues fetch task for execution. Tasks that are already done (e.g. cancelled) by the time
+	 * they are due for execution are discarded.
+	 */
+	void submit(String host, FutureTask<?> task) {
+		pendingFetchCount.incrementAndGet();
+		runOnDispatcher(() -> {
+			var hostQueue = hostQueues.computeIfAbsent(host, key -> new HostQueue(key, System.nanoTime()));
+			if (hostQueue.tasks.isEmpty())
+				hostRotation.addLast(hostQueue);
+			hostQueue.tasks.addLast(task);
+			dispatch();
+		});
+	}
+	
+	
+	int getPendingFetchCount() {
+		return pendingFetchCount.get();
+	}
+	
+	
+	private void dispatch() {
+		if (executorShutDown)
+			return;
+		
+		var now = System.nanoTime();
+		var started = true;
+		// Each pass over host rotation starts at most one task per host
+		while (started && runningFetchCount < maxConcurrentFetches && !hostRotation.isEmpty() && !executorShutDown) {
+			started = false;
+			for (int i = hostRotation.size(); i > 0 && runningFetchCount < maxConcurrentFetches; i--) {
+				var hostQueue = hostRotation.pollFirst();
+				if (hostQueue.runningFetchCount < maxConcurrentFetchesPerHost && now - hostQueue.nextStartTime >= 0)
+					started |= startNextTask(hostQueue, now);
+				if (!hostQueue.tasks.isEmpty())
+					hostRotation.addLast(hostQueue);
+				else if (hostQueue.isIdle())
+					removeWhenIdle(hostQueue); // all remaining tasks were discarded
+			}
+		}
+		if (!executorShutDown)
+			scheduleDelayedDispatch(now);
+	}
+	
+	
+	private boolean startNextTask(HostQueue hostQueue, long now) {
+		FutureTask<?> task;
+		do {
+			task = hostQueue.tasks.pollFirst();
+			if (task == null)
+				return false;
+			pendingFetchCount.decrementAndGet();
+		}
+		while (task.isDone());
+		
+		hostQueue.runningFetchCount++;
+		hostQueue.nextStartTime = now + hostMinIntervalNanos;
+		runningFetchCount++;
+		
+		var fetchTask = task;
+		try {
+			taskExecutor.execute(() -> {
+				try {
+					fetchTask.run();
+				}
+				finally {
+					runOnDispatcher(() -> completeTask(hostQueue));
+				}
+			});
+		}
+		catch (RuntimeException exception) {
+			// Counters are restored in place rather than by completing the task, as dispatch is in progress;
+			// if executor is still running, remaining tasks are retried by delayed dispatch
+			hostQueue.runningFetchCount--;
+			runningFetchCount--;
+			fetchTask.cancel(false);
+			if (taskExecutor.getThreadPoolExecutor().isShutdown()) {
+				executorShutDown = true;
+				logger.debug("Source feed fetch executor is shut down, stopping dispatch");
+			}
+			else {
+				logger.error("Failed to start source feed fetch task", exception);
+			}
+			return false;
+		}
+		return true;
+	}
+	
+	
+	private void completeTask(HostQueue hostQueue) {
+		hostQueue.runningFetchCount--;
+		runningFetchCount--;
+		if (hostQueue.isIdle())
+			removeWhenIdle(hostQueue);
+		dispatch();
+	}
+	
+	
+	private void removeWhenIdle(HostQueue hostQueue) {
+		// Removal is postponed until start interval passes, as new queue for the same host 
+		// would allow a task to start immediately
+		var delay = hostQueue.nextStartTime - System.nanoTime();
+		if (delay > 0) {
+			dispatcher.schedule(() -> removeWhenIdle(hostQueue), delay, TimeUnit.NANOSECONDS);
+		}
+		else if (hostQueue.isIdle()) {
+			hostQueues.remove(hostQueue.host, hostQueue);
+		}
+	}
+	
+	
+	private void scheduleDelayedDispatch(long now) {
+		// If there are tasks held back only by host start interval, run dispatch again 
+		// when the earliest of them is allowed to start
+		if (runningFetchCount >= maxConcurrentFetches)
+			return;
+		
+		var earliestStartTime = Long.MAX_VALUE;
+		for (var hostQueue : hostRotation) {
+			if (hostQueue.runningFetchCount < maxConcurrentFetchesPerHost)
+				earliestStartTime = Math.min(earliestStartTime, hostQueue.nextStartTime);
+		}
+		
+		if (earliestStartTime != Long.MAX_VALUE) {
+			var delay = Math.max(earliestStartTime - now, 0);
+			if (delayedDispatch == null || delayedDispatch.isDone() 
+					|| delayedDispatch.getDelay(TimeUnit.NANOSECONDS) > delay) {
+				if (delayedDispatch != null)
+					delayedDispatch.cancel(false);
+				delayedDispatch = dispatcher.schedule(this::dispatch, delay, TimeUnit.NANOSECONDS);
+			}
+		}
+	}
+	
+	
+	private void runOnDispatcher(Runnable action) {
+		try {
+			dispatcher.execute(action);
+		}
+		catch (RejectedExecutionException exception) {
+			logger.debug("Source feed fetch dispatcher is shut down, ignoring dispatch request");
+		}
+	}
+	
+	
+	@Override
+	public void destroy() {
+		dispatcher.shutdownNow();
+	}
+	
+}
@@ -0,0 +1,127 @@
+package io.bottomfeeder.sourcefeed.update;
+
+import static io.bottomfeeder.config.Constants.METRICS_HOST_TAG;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import io.bottomfeeder.sourcefeed.SourceFeed;
+import io.bottomfeeder.sourcefeed.entry.SourceFeedEntryMergeResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Records metrics of source feed update stages: fetching content from source host, parsing it,
+ * waiting for the lock on source feed and writing the entries.
+ * 
+ * Fetch time is measured until response headers are received. Response body is streamed into 
+ * the parser, so parse time includes reading the body. Fetch meters are tagged with source host,
+ * and fetch errors which produce no response are counted with {@code error} status.
+ */
+@Component
+class SourceFeedUpdateMetrics {
+
+	private static final String ERROR_STATUS = "error";
+	
+	private final MeterRegistry meterRegistry;
+	private final Timer parseTimer;
+	private final Timer lockWaitTimer;
+	private final DistributionSummary insertedEntries;
+	private final DistributionSummary updatedEntries;
+	private final DistributionSummary deletedEntries;
+	private final DistributionSummary unchangedEntries;
+	
+	
+	public SourceFeedUpdateMetrics(MeterRegistry meterRegistry, SourceFeedFetchScheduler fetchScheduler) {
+		this.meterRegistry = meterRegistry;
+		this.parseTimer = Timer.builder("bf.fetch.parse")
+				.description("Time spent reading and parsing source feed content")
+				.register(meterRegistry);
+		this.lockWaitTimer = Timer.builder("bf.update.lock.wait")
+				.description("Time spent waiting for the lock on source feed being updated")
+				.register(meterRegistry);
+		this.insertedEntries = entriesSummary("inserted");
+		this.updatedEntries = entriesSummary("updated");
+		this.deletedEntries = entriesSummary("deleted");
+		this.unchangedEntries = entriesSummary("unchanged");
+		
+		Gauge.builder("bf.fetch.pending", fetchScheduler, SourceFeedFetchScheduler::getPendingFetchCount)
+				.description("Number of fetch tasks waiting in host queues")
+				.register(meterRegistry);
+	}
+	
+	
+	private DistributionSummary entriesSummary(String operation) {
+		return DistributionSummary.builder("bf.update.entries")
+				.tag("operation", operation)
+				.description("Number of source feed entries per update, by operation")
+				.register(meterRegistry);
+	}
+	
+	
+	void recordFetch(SourceFeed sourceFeed, long durationNanos, int statusCode) {
+		recordFetch(sourceFeed, durationNanos, Integer.toString(statusCode));
+	}
+	
+	
+	void recordFetchError(SourceFeed sourceFeed, long durationNanos) {
+		recordFetch(sourceFeed, durationNanos, ERROR_STATUS);
+	}
+	
+	
+	private void recordFetch(SourceFeed sourceFeed, long durationNanos, String status) {
+		var host = getHost(sourceFeed);
+		Timer.builder("bf.fetch")
+				.tag(METRICS_HOST_TAG, host)
+				.description("Time until source host responds with headers")
+				.publishPercentileHistogram()
+				.register(meterRegistry)
+				.record(durationNanos, TimeUnit.NANOSECONDS);
+		Counter.builder("bf.fetch.responses")
+				.tag(METRICS_HOST_TAG, host)
+				.tag("status", status)
+				.description("Number of source host responses, by HTTP status")
+				.register(meterRegistry)
+				.increment();
+	}
+	
+	
+	void recordResponseSize(SourceFeed sourceFeed, long size) {
+		DistributionSummary.builder("bf.fetch.response.size")
+				.tag(METRICS_HOST_TAG, getHost(sourceFeed))
+				.baseUnit("bytes")
+				.description("Size of source feed response body")
+				.register(meterRegistry)
+				.record(size);
+	}
+	
+	
+	void recordParse(long durationNanos) {
+		parseTimer.record(durationNanos, TimeUnit.NANOSECONDS);
+	}
+	
+	
+	<T> T recordLockWait(Supplier<T> lockAcquirer) {
+		return lockWaitTimer.record(lockAcquirer);
+	}
+	
+	
+	void recordMergeResult(SourceFeedEntryMergeResult mergeResult) {
+		insertedEntries.record(mergeResult.inserted());
+		updatedEntries.record(mergeResult.updated());
+		deletedEntries.record(mergeResult.deleted());
+		unchangedEntries.record(mergeResult.unchanged());
+	}
+	
+	
+	private static String getHost(SourceFeed sourceFeed) {
+		return Objects.requireNonNullElse(sourceFeed.getURI().getHost(), "");
+	}
+	
+}
@@ -0,0 +1,88 @@
+package io.bottomfeeder.util;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A simple thread-safe cache holding its entries for a fixed time-to-live period.
+ * When the number of entries exceeds max size, least recently used entry is evicted.
+ * Expired entries are removed on access.
+ * 
+ * The cache keeps counters of hits, misses and evictions, available via {@link #getStats()}.
+ */
+public class TimedCache<K, V> {
+
+	private final long timeToLiveNanos;
+	private final Map<K, Entry<V>> entries;
+	
+	private long hits;
+	private long misses;
+	private long evictions;
+	
+	
+	/**
+	 * Cache statistics snapshot.
+	 */
+	public record Stats(long hits, long misses, long evictions, int size) {}
+	
+	
+	private record Entry<V>(V value, long expirationTime) {}
+	
+	
+	public TimedCache(int maxSize, Duration timeToLive) {
+		if (maxSize < 0 || timeToLive.isNegative())
+			throw new IllegalArgumentException("Invalid cache settings");
+		
+		this.timeToLiveNanos = timeToLive.toNanos();
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+				if (size() > maxSize) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+	
+	
+	public synchronized V get(K key) {
+		var entry = entries.get(key);
+		if (entry != null && System.nanoTime() - entry.expirationTime() >= 0) {
+			entries.remove(key);
+			entry = null;
+		}
+		
+		if (entry != null) {
+			hits++;
+			return entry.value();
+		}
+		else {
+			misses++;
+			return null;
+		}
+	}
+	
+	
+	public synchronized void put(K key, V value) {
+		entries.put(key, new Entry<>(value, System.nanoTime() + timeToLiveNanos));
+	}
+	
+	
+	public synchronized void invalidate(K key) {
+		entries.remove(key);
+	}
+	
+	
+	public synchronized void clear() {
+		entries.clear();
+	}
+	
+	
+	public synchronized Stats getStats() {
+		return new Stats(hits, misses, evictions, entries.size());
+	}
+	
+}
@@ -0,0 +1,48 @@
+package io.bottomfeeder.util;
+
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Binds statistics of a timed cache to meter registry, as cache hit, miss and eviction counters
+ * and cache size gauge, tagged with the name of the cache.
+ */
+public class TimedCacheMetrics implements MeterBinder {
+
+	private static final String CACHE_TAG = "cache";
+	
+	private final String cacheName;
+	private final Supplier<TimedCache.Stats> statsSupplier;
+	
+	
+	public TimedCacheMetrics(String cacheName, Supplier<TimedCache.Stats> statsSupplier) {
+		this.cacheName = cacheName;
+		this.statsSupplier = statsSupplier;
+	}
+	
+	
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		FunctionCounter.builder("bf.cache.hits", statsSupplier, stats -> stats.get().hits())
+				.tag(CACHE_TAG, cacheName)
+				.description("Number of cache hits")
+				.register(registry);
+		FunctionCounter.builder("bf.cache.misses", statsSupplier, stats -> stats.get().misses())
+				.tag(CACHE_TAG, cacheName)
+				.description("Number of cache misses")
+				.register(registry);
+		FunctionCounter.builder("bf.cache.evictions", statsSupplier, stats -> stats.get().evictions())
+				.tag(CACHE_TAG, cacheName)
+				.description("Number of entries evicted from cache due to size limit")
+				.register(registry);
+		Gauge.builder("bf.cache.size", statsSupplier, stats -> stats.get().size())
+				.tag(CACHE_TAG, cacheName)
+				.description("Number of entries in cache")
+				.register(registry);
+	}
+	
+}
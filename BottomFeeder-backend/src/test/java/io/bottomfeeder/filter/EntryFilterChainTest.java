@@ -0,0 +1,203 @@
+package io.bottomfeeder.filter;
+
+import static io.bottomfeeder.filter.Condition.CONTAINS;
+import static io.bottomfeeder.filter.Condition.DOES_NOT_CONTAIN;
+import static io.bottomfeeder.filter.Condition.DOES_NOT_EQUAL;
+import static io.bottomfeeder.filter.Condition.EQUALS;
+import static io.bottomfeeder.filter.Condition.LESS_THAN;
+import static io.bottomfeeder.filter.Condition.MORE_THAN;
+import static io.bottomfeeder.filter.Connective.AND;
+import static io.bottomfeeder.filter.Connective.OR;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that compiled filter chain gives the same results as filters evaluated one by one
+ * with {@code ConditionEvaluator} and composed with {@code Connective.compose}.
+ */
+class EntryFilterChainTest {
+
+	private static final List<String> STRING_VALUES = Arrays.asList(
+			null, "", " ", "Hello World", "HELLO", "hello world!", "Straße", "STRASSE", "İstanbul", "ıi",
+			"ǅemal", "ǆ", "Ελληνικά", "ΕΛΛΗΝΙΚΆ", "σς", "Σ");
+
+	private static final List<String> FILTER_STRING_VALUES = List.of(
+			"", " ", "hello", "WORLD", "hello world", "o w", "straße", "SS", "i", "I", "ı", "İ", "ǅ", "Ǆ",
+			"ελλην", "ΚΆ", "σ", "ς");
+
+	private static final List<Object> DATE_VALUES = Arrays.asList(
+			null,
+			Instant.parse("2021-03-01T00:00:00Z"),
+			Instant.parse("2021-03-01T12:00:00Z"),
+			Date.from(Instant.parse("2021-03-01T12:00:00Z")),
+			Instant.parse("2021-03-01T12:00:00.001Z"),
+			Date.from(Instant.parse("2021-02-28T23:59:59Z")));
+
+	private static final List<String> FILTER_DATE_VALUES = List.of(
+			"01.03.2021", "01.03.2021 12:00:00", "28.02.2021 23:59:59");
+
+
+	@Test
+	void stringConditionsFoldCaseLikeConditionEvaluator() {
+		for (var condition : List.of(CONTAINS, DOES_NOT_CONTAIN, EQUALS, DOES_NOT_EQUAL)) {
+			for (var filterValue : FILTER_STRING_VALUES) {
+				var filters = List.of(filter(Element.TITLE, condition, filterValue, null));
+				for (var value : STRING_VALUES)
+					assertSameResult(filters, entry(Element.TITLE, value));
+			}
+		}
+	}
+
+
+	@Test
+	void stringListConditionsFoldCaseLikeConditionEvaluator() {
+		var categoryLists = new ArrayList<List<String>>();
+		categoryLists.add(null);
+		categoryLists.add(List.of());
+		categoryLists.add(Arrays.asList("News", null, ""));
+		categoryLists.add(List.of("STRASSE", "İstanbul"));
+		categoryLists.add(List.of("hello world", "ǅemal", "Σ"));
+
+		for (var condition : List.of(CONTAINS, DOES_NOT_CONTAIN)) {
+			for (var filterValue : FILTER_STRING_VALUES) {
+				var filters = List.of(filter(Element.CATEGORIES, condition, filterValue, null));
+				for (var categories : categoryLists)
+					assertSameResult(filters, entry(Element.CATEGORIES, categories));
+			}
+		}
+	}
+
+
+	@Test
+	void dateTimeConditionsCompareLikeConditionEvaluator() {
+		for (var condition : List.of(EQUALS, DOES_NOT_EQUAL, LESS_THAN, MORE_THAN)) {
+			for (var filterValue : FILTER_DATE_VALUES) {
+				var filters = List.of(filter(Element.PUBLISH_DATE, condition, filterValue, null));
+				for (var value : DATE_VALUES)
+					assertSameResult(filters, entry(Element.PUBLISH_DATE, value));
+			}
+		}
+	}
+
+
+	@Test
+	void filtersSharingElementMatchConditionEvaluator() {
+		// Contains and does-not-contain filters on the same element are answered by multi-pattern matcher
+		var filters = List.of(
+				filter(Element.TITLE, CONTAINS, "hello", OR),
+				filter(Element.TITLE, DOES_NOT_CONTAIN, "World", AND),
+				filter(Element.TITLE, CONTAINS, "", AND),
+				filter(Element.TITLE, DOES_NOT_EQUAL, "hello", OR),
+				filter(Element.TITLE, CONTAINS, "straße", AND),
+				filter(Element.TITLE, DOES_NOT_CONTAIN, "ss", OR),
+				filter(Element.TITLE, CONTAINS, "ı", null));
+
+		for (var value : STRING_VALUES)
+			assertSameResult(filters, entry(Element.TITLE, value));
+	}
+
+
+	@Test
+	void mixedElementsAndConnectivesMatchConditionEvaluator() {
+		var filters = List.of(
+				filter(Element.TITLE, CONTAINS, "hello", AND),
+				filter(Element.PUBLISH_DATE, MORE_THAN, "01.03.2021", OR),
+				filter(Element.CATEGORIES, CONTAINS, "news", AND),
+				filter(Element.TITLE, DOES_NOT_CONTAIN, "world", AND),
+				filter(Element.AUTHOR, DOES_NOT_EQUAL, "", OR),
+				filter(Element.PUBLISH_DATE, LESS_THAN, "01.03.2021 12:00:00", null));
+
+		// Entries are evaluated one after another by the same chain, so that values retained
+		// for one entry can't leak into evaluation of the next one
+		for (var title : STRING_VALUES) {
+			for (var publishDate : DATE_VALUES) {
+				for (var author : Arrays.asList(null, "", "Author")) {
+					for (var categories : Arrays.asList(null, List.of(), List.of("NEWS"))) {
+						var values = new EnumMap<Element, Object>(Element.class);
+						values.put(Element.TITLE, title);
+						values.put(Element.PUBLISH_DATE, publishDate);
+						values.put(Element.AUTHOR, author);
+						values.put(Element.CATEGORIES, categories);
+						assertSameResult(filters, values::get);
+					}
+				}
+			}
+		}
+	}
+
+
+	@Test
+	void nullEntryDoesNotPass() {
+		var filterChain = EntryFilterChain.compile(List.of(filter(Element.TITLE, DOES_NOT_CONTAIN, "hello", null)));
+		assertFalse(filterChain.test(null));
+	}
+
+
+	@Test
+	void emptyFilterListCompilesToNoChain() {
+		assertNull(EntryFilterChain.compile(List.of()));
+	}
+
+
+	private static void assertSameResult(List<DigestEntryFilter> filters, FilterableEntry filterableEntry) {
+		var expected = evaluateOneByOne(filters).test(filterableEntry);
+		var actual = EntryFilterChain.compile(filters).test(filterableEntry);
+		assertEquals(expected, actual, () -> describe(filters, filterableEntry));
+	}
+
+
+	private static Predicate<FilterableEntry> evaluateOneByOne(List<DigestEntryFilter> filters) {
+		Predicate<FilterableEntry> result = null;
+		Connective connective = null;
+		for (var entryFilter : filters) {
+			var element = entryFilter.getElement();
+			var conditionEvaluator = DataTypeCondition.of(element.dataType(), entryFilter.getCondition())
+					.conditionEvaluator();
+			var filterValue = entryFilter.getValue();
+			Predicate<FilterableEntry> predicate = filterableEntry ->
+					conditionEvaluator.evaluate(filterableEntry.getElementValue(element), filterValue);
+			result = result == null ? predicate : connective.compose(result, predicate);
+			connective = entryFilter.getConnective();
+		}
+		return result;
+	}
+
+
+	private static DigestEntryFilter filter(Element element, Condition condition, String value, Connective connective) {
+		var entryFilter = new DigestEntryFilter();
+		entryFilter.setElement(element);
+		entryFilter.setCondition(condition);
+		entryFilter.setValue(value);
+		entryFilter.setConnective(connective);
+		return entryFilter;
+	}
+
+
+	private static FilterableEntry entry(Element element, Object value) {
+		return requestedElement -> requestedElement == element ? value : null;
+	}
+
+
+	private static String describe(List<DigestEntryFilter> filters, FilterableEntry filterableEntry) {
+		var description = new StringBuilder();
+		for (var entryFilter : filters) {
+			var element = entryFilter.getElement();
+			description.append(String.format("%s %s '%s' (value: %s) %s ", element, entryFilter.getCondition(),
+					entryFilter.getValue(), filterableEntry.getElementValue(element),
+					entryFilter.getConnective() != null ? entryFilter.getConnective() : ""));
+		}
+		return description.toString().trim();
+	}
+
+}
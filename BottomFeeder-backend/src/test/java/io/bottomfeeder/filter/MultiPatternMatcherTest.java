@@ -0,0 +1,119 @@
+package io.bottomfeeder.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that multi-pattern matcher finds the same patterns as {@code StringUtils.containsIgnoreCase}
+ * applied to each pattern separately.
+ */
+class MultiPatternMatcherTest {
+
+	@Test
+	void overlappingPatterns() {
+		assertMatchesContainsIgnoreCase(
+				List.of("abc", "bcd", "cde", "abcde", "bc"),
+				"xabcdex", "abcd", "bcde", "ab", "cd", "abcabc", "ABCDE", "");
+	}
+
+
+	@Test
+	void patternsThatAreSuffixesOfOthers() {
+		// Suffix patterns must be reported via failure links when the longer pattern matches
+		assertMatchesContainsIgnoreCase(
+				List.of("she", "he", "e", "hers", "rs", "his"),
+				"ushers", "she", "he", "hers", "sHE", "hi", "this", "r");
+	}
+
+
+	@Test
+	void patternsRepeatedAndSharingPrefixes() {
+		assertMatchesContainsIgnoreCase(
+				List.of("news", "NEWS", "new", "newsletter", "ne", "aaa", "aa"),
+				"newsletter", "Renewal", "NEW", "n", "aaaa", "aa", "baaab");
+	}
+
+
+	@Test
+	void emptyPatternsOccurInAnyNonNullValue() {
+		var patterns = List.of("", "x", "");
+		var matcher = new MultiPatternMatcher(patterns);
+		for (var value : List.of("", "x", "abc")) {
+			var matches = match(matcher, value);
+			assertTrue(MultiPatternMatcher.isMatched(matches, 0));
+			assertTrue(MultiPatternMatcher.isMatched(matches, 2));
+		}
+		assertMatchesContainsIgnoreCase(patterns, "", "x", "abc", "X");
+	}
+
+
+	@Test
+	void nullValueMatchesNoPattern() {
+		// Bit set is reused after a value that matches all patterns, so it must be cleared
+		var patterns = List.of("", "a", "b");
+		var matcher = new MultiPatternMatcher(patterns);
+		var matches = match(matcher, "ab");
+		matcher.match(null, matches);
+		for (int patternIndex = 0; patternIndex < patterns.size(); patternIndex++)
+			assertFalse(MultiPatternMatcher.isMatched(matches, patternIndex));
+	}
+
+
+	@Test
+	void moreThan64Patterns() {
+		// Bit sets span several words, so patterns at word boundaries are checked
+		var patterns = new ArrayList<String>();
+		for (int i = 0; i < 150; i++)
+			patterns.add("p" + i + "x");
+		patterns.add("");
+		patterns.add("P63X");
+
+		assertMatchesContainsIgnoreCase(patterns,
+				"p0x", "p63x", "p64x", "p127x", "p128x", "p149x", "p150x", "P1X P2X P63X P64X P65X P128X", "p1", "");
+		var matches = match(new MultiPatternMatcher(patterns), "p64x");
+		assertEquals(3, matches.length);
+		assertTrue(MultiPatternMatcher.isMatched(matches, 64));
+		assertFalse(MultiPatternMatcher.isMatched(matches, 63));
+		assertTrue(MultiPatternMatcher.isMatched(matches, 150));
+	}
+
+
+	@Test
+	void nonAsciiCaseFolding() {
+		assertMatchesContainsIgnoreCase(
+				List.of("straße", "SS", "ı", "İ", "i", "ǅ", "σ", "ς", "ΆΛΦΑ", "ﬀ", "ǆemal"),
+				"STRASSE", "Straße", "İstanbul", "DIŞ", "ılık", "Ǆemal", "ǆEMAL", "ΣΟΦΙΑ", "σοφίας", "άλφα", "ﬀ", "FF");
+	}
+
+
+	private static void assertMatchesContainsIgnoreCase(List<String> patterns, String... values) {
+		// Bit set is reused for all values, as it is by filter chain
+		var matcher = new MultiPatternMatcher(patterns);
+		var matches = matcher.newMatches();
+		for (var value : Arrays.asList(values)) {
+			matcher.match(value, matches);
+			for (int patternIndex = 0; patternIndex < patterns.size(); patternIndex++) {
+				var pattern = patterns.get(patternIndex);
+				assertEquals(StringUtils.containsIgnoreCase(value, pattern),
+						MultiPatternMatcher.isMatched(matches, patternIndex),
+						String.format("Pattern '%s' in value '%s'", pattern, value));
+			}
+		}
+	}
+
+
+	private static long[] match(MultiPatternMatcher matcher, String value) {
+		var matches = matcher.newMatches();
+		matcher.match(value, matches);
+		return matches;
+	}
+
+}
@@ -0,0 +1,154 @@
+package io.bottomfeeder.sourcefeed.entry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that source feed entry cursor continues each batch right after the last fetched entry,
+ * including entries with the same date, grows batch size up to the limit and stops fetching
+ * once it's exhausted.
+ */
+class SourceFeedEntryCursorTest {
+
+	@Test
+	void continuesAfterLastEntryOfBatch() {
+		// Several entries share each date, so batches end in the middle of same-date runs
+		var entries = new ArrayList<SourceFeedEntry>();
+		for (long id = 100; id > 0; id--)
+			entries.add(entry(id, Instant.parse("2021-03-01T00:00:00Z").minusSeconds(id / 7 * 60)));
+		var fetcher = new ListBatchFetcher(entries);
+
+		var cursor = new SourceFeedEntryCursor(fetcher, 3, 16);
+		assertEquals(ids(fetcher.ordered), ids(readAll(cursor)));
+		assertEquals(List.of(3, 6, 12, 16, 16, 16, 16, 16), fetcher.limits);
+	}
+
+
+	@Test
+	void doesNotFetchAfterShortBatch() {
+		var fetcher = new ListBatchFetcher(entries(5));
+		var cursor = new SourceFeedEntryCursor(fetcher, 4, 10);
+
+		assertEquals(ids(fetcher.ordered), ids(readAll(cursor)));
+		assertFalse(cursor.advance());
+		assertFalse(cursor.advance());
+		assertEquals(List.of(4, 8), fetcher.limits);
+	}
+
+
+	@Test
+	void fetchesOnceMoreAfterFullBatch() {
+		// Cursor can't tell that the last full batch was the end, so it takes an empty fetch to find out
+		var fetcher = new ListBatchFetcher(entries(12));
+		var cursor = new SourceFeedEntryCursor(fetcher, 4, 8);
+
+		assertEquals(ids(fetcher.ordered), ids(readAll(cursor)));
+		assertFalse(cursor.advance());
+		assertEquals(List.of(4, 8, 8), fetcher.limits);
+	}
+
+
+	@Test
+	void emptySourceIsExhaustedAfterFirstFetch() {
+		var fetcher = new ListBatchFetcher(List.of());
+		var cursor = new SourceFeedEntryCursor(fetcher, 10, 200);
+
+		assertFalse(cursor.advance());
+		assertFalse(cursor.advance());
+		assertEquals(List.of(10), fetcher.limits);
+	}
+
+
+	@Test
+	void mostRecentFirstOrdersByDateThenId() {
+		var date = Instant.parse("2021-03-01T00:00:00Z");
+		var cursors = List.of(
+				positionedCursor(entry(1, date)),
+				positionedCursor(entry(3, date.minusSeconds(1))),
+				positionedCursor(entry(2, date)));
+
+		var ordered = cursors.stream()
+				.sorted(SourceFeedEntryCursor.MOST_RECENT_FIRST)
+				.map(cursor -> cursor.current().getId())
+				.collect(Collectors.toList());
+		assertEquals(List.of(2L, 1L, 3L), ordered);
+	}
+
+
+	private static List<SourceFeedEntry> readAll(SourceFeedEntryCursor cursor) {
+		var entries = new ArrayList<SourceFeedEntry>();
+		while (cursor.advance())
+			entries.add(cursor.current());
+		return entries;
+	}
+
+
+	private static SourceFeedEntryCursor positionedCursor(SourceFeedEntry entry) {
+		var cursor = new SourceFeedEntryCursor(new ListBatchFetcher(List.of(entry)), 10, 10);
+		cursor.advance();
+		return cursor;
+	}
+
+
+	private static List<SourceFeedEntry> entries(int count) {
+		var entries = new ArrayList<SourceFeedEntry>();
+		for (long id = 1; id <= count; id++)
+			entries.add(entry(id, Instant.parse("2021-03-01T00:00:00Z").plusSeconds(id)));
+		return entries;
+	}
+
+
+	private static SourceFeedEntry entry(long id, Instant date) {
+		var entry = new SourceFeedEntry();
+		entry.setId(id);
+		entry.setDate(date);
+		return entry;
+	}
+
+
+	private static List<Long> ids(List<SourceFeedEntry> entries) {
+		return entries.stream().map(SourceFeedEntry::getId).collect(Collectors.toList());
+	}
+
+
+	/**
+	 * Batch fetcher over in-memory entries, continuing after the given entry the same way
+	 * as keyset pagination in {@code SourceFeedEntryQueriesImpl}, and recording requested limits.
+	 */
+	static final class ListBatchFetcher implements SourceFeedEntryCursor.BatchFetcher {
+
+		final List<SourceFeedEntry> ordered;
+		final List<Integer> limits = new ArrayList<>();
+
+		ListBatchFetcher(List<SourceFeedEntry> entries) {
+			ordered = entries.stream()
+					.sorted(Comparator.comparing(SourceFeedEntry::getDate)
+							.thenComparing(SourceFeedEntry::getId)
+							.reversed())
+					.collect(Collectors.toList());
+		}
+
+		@Override
+		public List<SourceFeedEntry> fetch(SourceFeedEntry after, int limit) {
+			limits.add(limit);
+			return ordered.stream()
+					.filter(entry -> after == null || isAfter(entry, after))
+					.limit(limit)
+					.collect(Collectors.toList());
+		}
+
+		private static boolean isAfter(SourceFeedEntry entry, SourceFeedEntry after) {
+			var dateComparison = entry.getDate().compareTo(after.getDate());
+			return dateComparison < 0 || (dateComparison == 0 && entry.getId() < after.getId());
+		}
+	}
+
+}
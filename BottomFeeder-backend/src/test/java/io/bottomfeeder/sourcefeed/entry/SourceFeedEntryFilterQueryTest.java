@@ -0,0 +1,180 @@
+package io.bottomfeeder.sourcefeed.entry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.ApplicationEventPublisher;
+
+import io.bottomfeeder.digest.Digest;
+import io.bottomfeeder.digest.feed.DigestFeedFormat;
+import io.bottomfeeder.filter.Condition;
+import io.bottomfeeder.filter.Connective;
+import io.bottomfeeder.filter.DigestEntryFilter;
+import io.bottomfeeder.filter.DigestEntryFilterRepository;
+import io.bottomfeeder.filter.Element;
+import io.bottomfeeder.filter.EntryFilterService;
+import io.bottomfeeder.filter.FilterableEntry;
+import io.bottomfeeder.filter.SourceFeedEntryFilterRepository;
+import io.bottomfeeder.security.Role;
+import io.bottomfeeder.sourcefeed.SourceFeed;
+import io.bottomfeeder.sourcefeed.SourceFeedRepository;
+import io.bottomfeeder.user.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Checks that entries selected by query translated from filter chain and then passed through
+ * the chain are the same as entries passed through the chain without query, i.e. that query never
+ * drops entries accepted by the chain. Stored values include characters whose case conversion differs
+ * between Java and databases, and entries without exact or folded values.
+ */
+@DataJpaTest
+class SourceFeedEntryFilterQueryTest {
+
+	private static final List<String> VALUES = List.of("İstanbul", "ISTANBUL", "istanbul", "ıstanbul", "Straße",
+			"STRASSE", "ǅemal", "ǆemal", "ΣΊΣΥΦΟΣ", "σίσυφος", "Kelvin", "kelvin", "100% pure", "a_b", "a\\b",
+			"𐐀 Deseret", "𐐨 deseret");
+	private static final List<String> FILTER_VALUES = List.of("is", "istanbul", "İSTANBUL", "i̇stanbul", "ı",
+			"ß", "ss", "ǆ", "Ǆemal", "σ", "ς", "sisyphus", "k", "K", "%", "100%", "_", "a_b", "\\",
+			"𐐀", "\uD801", "\uDC28 deseret", "", "news\nistanbul");
+	private static final List<Element> STRING_ELEMENTS = List.of(Element.TITLE, Element.CONTENT, Element.AUTHOR);
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Autowired
+	private SourceFeedEntryRepository sourceFeedEntryRepository;
+
+	private Digest digest;
+	private SourceFeed sourceFeed;
+
+
+	@BeforeEach
+	void setUp() {
+		var owner = entityManager.persist(new User("owner", "$2a$10$" + "a".repeat(53), Role.USER));
+		digest = entityManager.persist(new Digest("Digest", 20, false, owner, Digest.createExternalId()));
+		sourceFeed = entityManager.persist(new SourceFeed("https://example.com/feed", 60, 0, digest));
+
+		var date = Instant.parse("2021-03-01T00:00:00Z");
+		for (var value : VALUES) {
+			persistEntry(date, value, entry -> {});
+			// Stored by previous versions, with no folded values or no extracted values at all
+			persistEntry(date, value, SourceFeedEntryFilterQueryTest::clearFoldedValues);
+			persistEntry(date, value, entry -> entry.setFieldsTruncated(null));
+		}
+		persistEntry(date, null, entry -> {});
+		entityManager.flush();
+	}
+
+
+	@Test
+	void stringConditionsSelectAllAcceptedEntries() {
+		for (var element : STRING_ELEMENTS) {
+			for (var condition : List.of(Condition.CONTAINS, Condition.DOES_NOT_CONTAIN,
+					Condition.EQUALS, Condition.DOES_NOT_EQUAL)) {
+				for (var filterValue : FILTER_VALUES)
+					assertSameAsInMemory(List.of(filter(element, condition, filterValue, null)));
+			}
+		}
+	}
+
+
+	@Test
+	void stringListConditionsSelectAllAcceptedEntries() {
+		for (var condition : List.of(Condition.CONTAINS, Condition.DOES_NOT_CONTAIN)) {
+			for (var filterValue : FILTER_VALUES)
+				assertSameAsInMemory(List.of(filter(Element.CATEGORIES, condition, filterValue, null)));
+		}
+	}
+
+
+	@Test
+	void composedConditionsSelectAllAcceptedEntries() {
+		assertSameAsInMemory(List.of(
+				filter(Element.TITLE, Condition.CONTAINS, "is", Connective.AND),
+				filter(Element.CONTENT, Condition.DOES_NOT_EQUAL, "istanbul", Connective.OR),
+				filter(Element.CATEGORIES, Condition.CONTAINS, "ss", null)));
+		assertSameAsInMemory(List.of(
+				filter(Element.AUTHOR, Condition.DOES_NOT_CONTAIN, "σ", Connective.OR),
+				filter(Element.TITLE, Condition.EQUALS, "ǆemal", null)));
+	}
+
+
+	private void assertSameAsInMemory(List<DigestEntryFilter> filters) {
+		var digestEntryFilterRepository = mock(DigestEntryFilterRepository.class);
+		when(digestEntryFilterRepository.findByAssociatedEntityOrderByOrdinal(digest)).thenReturn(filters);
+		var entryFilterService = new EntryFilterService(digestEntryFilterRepository,
+				mock(SourceFeedEntryFilterRepository.class), mock(SourceFeedRepository.class),
+				mock(ApplicationEventPublisher.class), 10, 60, new SimpleMeterRegistry());
+
+		var entryFilterChain = entryFilterService.getDigestEntryFilterChain(digest);
+		var specification = entryFilterService.getDigestEntryFilterSpecification(
+				digest, new SourceFeedEntryElementMapping(DigestFeedFormat.RSS_2_0));
+
+		var expected = filterIds(sourceFeedEntryRepository.findSourceFeedEntries(
+				sourceFeed.getId(), null, DigestFeedFormat.RSS_2_0, null, Integer.MAX_VALUE), entryFilterChain);
+		var actual = filterIds(sourceFeedEntryRepository.findSourceFeedEntries(
+				sourceFeed.getId(), specification, DigestFeedFormat.RSS_2_0, null, Integer.MAX_VALUE), entryFilterChain);
+		assertEquals(expected, actual, () -> filters.stream()
+				.map(filter -> filter.getElement() + " " + filter.getCondition() + " '" + filter.getValue() + "'")
+				.collect(Collectors.joining(", ")));
+	}
+
+
+	private static List<Long> filterIds(List<SourceFeedEntry> entries, Predicate<FilterableEntry> entryFilterChain) {
+		// Stored values are the same as the ones in content, so they are used for entries without exact values too
+		return entries.stream()
+				.filter(entry -> entryFilterChain.test(entry::getElementValue))
+				.map(SourceFeedEntry::getId)
+				.collect(Collectors.toList());
+	}
+
+
+	private void persistEntry(Instant date, String value, Consumer<SourceFeedEntry> storedState) {
+		var categories = new ArrayList<String>();
+		categories.add("News");
+		if (value != null)
+			categories.add(value);
+
+		var entry = new SourceFeedEntry(null, date, "content".getBytes(StandardCharsets.UTF_8), null, sourceFeed);
+		entry.setElementValues(value, null, value, null, categories, value != null ? value : "", null, null);
+		storedState.accept(entry);
+		if (entry.getFieldsTruncated() == null)
+			entry.setContentTruncated(null);
+		entityManager.persist(entry);
+	}
+
+
+	private static void clearFoldedValues(SourceFeedEntry entry) {
+		entry.setFoldedTitle(null);
+		entry.setFoldedLink(null);
+		entry.setFoldedAuthor(null);
+		entry.setFoldedCategories(null);
+		entry.setFoldedExcerpt(null);
+	}
+
+
+	private DigestEntryFilter filter(Element element, Condition condition, String value, Connective connective) {
+		var filter = new DigestEntryFilter();
+		filter.setElement(element);
+		filter.setCondition(condition);
+		filter.setValue(value);
+		filter.setConnective(connective);
+		filter.setAssociatedEntity(digest);
+		return filter;
+	}
+
+}
@@ -0,0 +1,195 @@
+package io.bottomfeeder.sourcefeed.entry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import io.bottomfeeder.digest.Digest;
+import io.bottomfeeder.digest.feed.DigestFeedFormat;
+import io.bottomfeeder.filter.Element;
+import io.bottomfeeder.filter.EntryFilterService;
+import io.bottomfeeder.filter.FilterableEntry;
+import io.bottomfeeder.sourcefeed.SourceFeedRepository;
+
+/**
+ * Checks that digest feed content is assembled from source feed entry cursors in the same order
+ * and with the same entries as when all entries of digest are sorted from the most recent
+ * to the oldest, filtered and limited to digest's maximum number of entries.
+ *
+ * Repositories are replaced with in-memory entries read the same way as with keyset pagination
+ * in {@code SourceFeedEntryQueriesImpl}.
+ */
+class SourceFeedEntryServiceTest {
+
+	private static final Instant LATEST_DATE = Instant.parse("2021-03-01T00:00:00Z");
+	private static final Comparator<SourceFeedEntry> MOST_RECENT_FIRST = Comparator
+			.comparing(SourceFeedEntry::getDate)
+			.thenComparing(SourceFeedEntry::getId)
+			.reversed();
+	private static final Predicate<FilterableEntry> NOT_HIDDEN = filterableEntry ->
+			!((String)filterableEntry.getElementValue(Element.TITLE)).startsWith("Hidden");
+
+	private final SourceFeedEntryRepository sourceFeedEntryRepository = mock(SourceFeedEntryRepository.class);
+	private final EntryFilterService entryFilterService = mock(EntryFilterService.class);
+	private final SourceFeedRepository sourceFeedRepository = mock(SourceFeedRepository.class);
+	private final SourceFeedEntryService sourceFeedEntryService = new SourceFeedEntryService(
+			sourceFeedEntryRepository, entryFilterService, sourceFeedRepository);
+
+	private final Map<Long, List<SourceFeedEntry>> entriesBySourceFeed = new LinkedHashMap<>();
+	private final Map<Long, List<Integer>> fetchLimitsBySourceFeed = new HashMap<>();
+	private final Digest digest = new Digest();
+	private long nextEntryId = 1;
+
+
+	SourceFeedEntryServiceTest() {
+		digest.setId(1L);
+		when(sourceFeedRepository.findIdsByDigest(digest)).thenAnswer(invocation ->
+				new ArrayList<>(entriesBySourceFeed.keySet()));
+		when(sourceFeedEntryRepository.findSourceFeedEntries(anyLong(), any(), eq(DigestFeedFormat.RSS_2_0), any(), anyInt()))
+				.thenAnswer(invocation -> {
+					long sourceFeedId = invocation.getArgument(0);
+					int limit = invocation.getArgument(4);
+					fetchLimitsBySourceFeed.computeIfAbsent(sourceFeedId, id -> new ArrayList<>()).add(limit);
+					return fetch(entriesBySourceFeed.get(sourceFeedId), invocation.getArgument(3), limit);
+				});
+		when(sourceFeedEntryRepository.findDigestFeedEntries(anyLong(), eq(DigestFeedFormat.RSS_2_0), any(), anyInt()))
+				.thenAnswer(invocation -> fetch(allEntries(), invocation.getArgument(2), invocation.getArgument(3)));
+	}
+
+
+	@Test
+	void mergesFeedsWithTiesOnDate() {
+		// All feeds have entries with the same dates, so the order of merged entries is decided by ID,
+		// and batches end in the middle of runs of entries with the same date
+		for (long sourceFeedId = 1; sourceFeedId <= 3; sourceFeedId++) {
+			for (int index = 0; index < 60; index++)
+				addEntry(sourceFeedId, LATEST_DATE.minusSeconds(index / 3 * 60), index % 4 != 0);
+		}
+
+		assertMergedLikeSortedEntries(NOT_HIDDEN, 20);
+		for (long sourceFeedId = 1; sourceFeedId <= 3; sourceFeedId++)
+			assertEquals(List.of(20, 40), fetchLimitsBySourceFeed.get(sourceFeedId));
+	}
+
+
+	@Test
+	void continuesWithRemainingFeedsWhenCursorsAreExhausted() {
+		// The first feed has only the most recent entries, the second one has no entries at all
+		for (int index = 0; index < 3; index++)
+			addEntry(1, LATEST_DATE.minusSeconds(index), false);
+		entriesBySourceFeed.put(2L, new ArrayList<>());
+		for (int index = 0; index < 100; index++)
+			addEntry(3, LATEST_DATE.minusSeconds(index * 60), index % 2 == 0);
+
+		assertMergedLikeSortedEntries(NOT_HIDDEN, 30);
+		assertEquals(List.of(30), fetchLimitsBySourceFeed.get(1L));
+		assertEquals(List.of(30), fetchLimitsBySourceFeed.get(2L));
+	}
+
+
+	@Test
+	void returnsAllEntriesWhenAllCursorsAreExhausted() {
+		for (long sourceFeedId = 1; sourceFeedId <= 4; sourceFeedId++) {
+			for (int index = 0; index < 15; index++)
+				addEntry(sourceFeedId, LATEST_DATE.minusSeconds(index * sourceFeedId * 60), index % 3 == 0);
+		}
+
+		assertMergedLikeSortedEntries(NOT_HIDDEN, 100);
+	}
+
+
+	@Test
+	void skipsFilteredOutRunLongerThanBatch() {
+		// The most recent entries of the first feed are all filtered out, spanning several maximum-size batches
+		for (int index = 0; index < 700; index++)
+			addEntry(1, LATEST_DATE.minusSeconds(index), true);
+		for (int index = 0; index < 20; index++)
+			addEntry(1, LATEST_DATE.minusSeconds(1000 + index * 60), false);
+		for (int index = 0; index < 20; index++)
+			addEntry(2, LATEST_DATE.minusSeconds(1000 + index * 60), index % 2 == 0);
+
+		assertMergedLikeSortedEntries(NOT_HIDDEN, 25);
+		assertEquals(List.of(25, 50, 100, 200, 200, 200), fetchLimitsBySourceFeed.get(1L));
+	}
+
+
+	@Test
+	void readsDigestEntriesWithoutFilters() {
+		for (long sourceFeedId = 1; sourceFeedId <= 3; sourceFeedId++) {
+			for (int index = 0; index < 30; index++)
+				addEntry(sourceFeedId, LATEST_DATE.minusSeconds(index / 2 * 60), false);
+		}
+
+		assertMergedLikeSortedEntries(null, 45);
+		verify(sourceFeedEntryRepository, never()).findSourceFeedEntries(anyLong(), any(), any(), any(), anyInt());
+	}
+
+
+	private void assertMergedLikeSortedEntries(Predicate<FilterableEntry> entryFilterChain, int maxEntries) {
+		digest.setMaxEntries(maxEntries);
+		when(entryFilterService.getDigestEntryFilterChain(digest)).thenReturn(entryFilterChain);
+
+		var expected = allEntries().stream()
+				.filter(entry -> entryFilterChain == null || entryFilterChain.test(entry::getElementValue))
+				.limit(maxEntries)
+				.map(SourceFeedEntry::getId)
+				.collect(Collectors.toList());
+
+		var actual = new ArrayList<Long>();
+		sourceFeedEntryService.loadDigestFeedContent(digest, DigestFeedFormat.RSS_2_0,
+				fragment -> actual.add(Long.valueOf(new String(fragment, StandardCharsets.UTF_8))));
+
+		assertEquals(expected, actual);
+		// All entries have extracted values and fragments, so their content is never needed
+		verify(sourceFeedEntryRepository, never()).findContentById(anyLong());
+	}
+
+
+	private void addEntry(long sourceFeedId, Instant date, boolean hidden) {
+		var id = nextEntryId++;
+		var entry = new SourceFeedEntry();
+		entry.setId(id);
+		entry.setDate(date);
+		entry.setElementValues((hidden ? "Hidden " : "Entry ") + id, null, null, null, List.of(), "", date, null);
+		var fragment = String.valueOf(id).getBytes(StandardCharsets.UTF_8);
+		entry.setFragments(fragment, fragment);
+		entriesBySourceFeed.computeIfAbsent(sourceFeedId, sourceFeed -> new ArrayList<>()).add(entry);
+	}
+
+
+	private List<SourceFeedEntry> allEntries() {
+		return entriesBySourceFeed.values().stream()
+				.flatMap(List::stream)
+				.sorted(MOST_RECENT_FIRST)
+				.collect(Collectors.toList());
+	}
+
+
+	private static List<SourceFeedEntry> fetch(List<SourceFeedEntry> entries, SourceFeedEntry after, int limit) {
+		return entries.stream()
+				.sorted(MOST_RECENT_FIRST)
+				.filter(entry -> after == null || MOST_RECENT_FIRST.compare(entry, after) > 0)
+				.limit(limit)
+				.collect(Collectors.toList());
+	}
+
+}
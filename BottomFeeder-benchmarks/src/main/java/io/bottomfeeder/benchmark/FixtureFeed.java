@@ -0,0 +1,93 @@
+package io.bottomfeeder.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import com.rometools.rome.feed.synd.SyndEntry;
+import com.rometools.rome.feed.synd.SyndFeed;
+import com.rometools.rome.io.FeedException;
+import com.rometools.rome.io.SyndFeedInput;
+import com.rometools.rome.io.XmlReader;
+
+import io.bottomfeeder.digest.feed.DigestFeedFormat;
+
+/**
+ * Feeds bundled with benchmarks as fixtures, so that benchmarks run offline on the same data.
+ * Each fixture feed contains 100 entries with HTML content, categories and authors.
+ */
+public enum FixtureFeed {
+
+	RSS ("fixtures/rss-feed.xml", DigestFeedFormat.RSS_2_0),
+	ATOM ("fixtures/atom-feed.xml", DigestFeedFormat.ATOM_1_0);
+	
+	
+	private final String resourceName;
+	private final DigestFeedFormat digestFeedFormat;
+	
+	
+	FixtureFeed(String resourceName, DigestFeedFormat digestFeedFormat) {
+		this.resourceName = resourceName;
+		this.digestFeedFormat = digestFeedFormat;
+	}
+	
+	
+	/**
+	 * Digest feed format matching the format of fixture feed.
+	 */
+	public DigestFeedFormat digestFeedFormat() {
+		return digestFeedFormat;
+	}
+	
+	
+	public SyndFeed load() {
+		try (var input = FixtureFeed.class.getClassLoader().getResourceAsStream(resourceName)) {
+			if (input == null)
+				throw new IllegalStateException(String.format("Fixture feed not found: %s", resourceName));
+			return new SyndFeedInput().build(new XmlReader(input));
+		}
+		catch (IOException | FeedException e) {
+			throw new IllegalStateException(String.format("Failed to load fixture feed: %s", resourceName), e);
+		}
+	}
+	
+	
+	/**
+	 * Returns the specified number of entries, repeating fixture entries as needed. Repeated entries
+	 * are copies with distinct URI, link and dates, so that they are not duplicates of each other.
+	 */
+	public List<SyndEntry> loadEntries(int count) {
+		var fixtureEntries = load().getEntries();
+		var entries = new ArrayList<SyndEntry>(count);
+		for (int i = 0; i < count; i++) {
+			var round = i / fixtureEntries.size();
+			var fixtureEntry = fixtureEntries.get(i % fixtureEntries.size());
+			entries.add(round == 0 ? fixtureEntry : copyEntry(fixtureEntry, round));
+		}
+		return entries;
+	}
+	
+	
+	private static SyndEntry copyEntry(SyndEntry syndEntry, int round) {
+		try {
+			var copy = (SyndEntry)syndEntry.clone();
+			var suffix = "-" + round;
+			copy.setUri(syndEntry.getUri() + suffix);
+			copy.setLink(syndEntry.getLink() + suffix);
+			copy.setPublishedDate(shiftDate(syndEntry.getPublishedDate(), round));
+			copy.setUpdatedDate(shiftDate(syndEntry.getUpdatedDate(), round));
+			return copy;
+		}
+		catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	
+	private static Date shiftDate(Date date, int round) {
+		// Copies are older than all fixture entries, one year per round
+		return date != null ? new Date(date.getTime() - round * 365L * 24 * 60 * 60 * 1000) : null;
+	}
+	
+}
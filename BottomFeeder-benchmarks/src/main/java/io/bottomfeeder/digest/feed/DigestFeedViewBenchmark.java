@@ -0,0 +1,102 @@
+package io.bottomfeeder.digest.feed;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.rometools.rome.feed.synd.SyndFeed;
+import com.rometools.rome.feed.synd.SyndFeedImpl;
+
+import io.bottomfeeder.benchmark.FixtureFeed;
+import io.bottomfeeder.sourcefeed.entry.EntryFragments;
+
+/**
+ * Measures rendering of digest feed view, both streamed from pre-rendered entry fragments,
+ * as done for documents that are not cached, and written from cached document.
+ * Entries come from fixture feed of the same format as the digest feed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DigestFeedViewBenchmark {
+
+	@Param({"20", "100", "500"})
+	private int entryCount;
+	
+	@Param
+	private FixtureFeed fixtureFeed;
+	
+	private DigestFeedFormat digestFeedFormat;
+	private SyndFeed digestFeed;
+	private List<byte[]> fragments;
+	private byte[] renderedDigestFeed;
+	
+	
+	@Setup
+	public void setUp() throws Exception {
+		digestFeedFormat = fixtureFeed.digestFeedFormat();
+		
+		digestFeed = new SyndFeedImpl();
+		digestFeed.setFeedType(digestFeedFormat.type());
+		digestFeed.setEncoding("UTF-8");
+		digestFeed.setTitle("Benchmark digest");
+		digestFeed.setDescription("Benchmark digest");
+		digestFeed.setGenerator("Bottom Feeder");
+		digestFeed.setLink("http://localhost:8080/digest/benchmark/feed." + digestFeedFormat.extension());
+		digestFeed.setPublishedDate(new Date());
+		
+		fragments = EntryFragments.render(fixtureFeed.loadEntries(entryCount), digestFeedFormat);
+		
+		var output = new ByteArrayOutputStream();
+		writeDigestFeed(new DigestFeedWriter(digestFeedFormat, output));
+		renderedDigestFeed = output.toByteArray();
+	}
+	
+	
+	@Benchmark
+	public int streamed() throws Exception {
+		var digestFeedView = DigestFeedView.streamed(digestFeedFormat, 
+				outputStream -> writeDigestFeed(new DigestFeedWriter(digestFeedFormat, outputStream)), null);
+		return render(digestFeedView);
+	}
+	
+	
+	@Benchmark
+	public int cached() throws Exception {
+		return render(DigestFeedView.rendered(digestFeedFormat, renderedDigestFeed, null));
+	}
+	
+	
+	private void writeDigestFeed(DigestFeedWriter digestFeedWriter) {
+		digestFeedWriter.startFeed(digestFeed);
+		for (var fragment : fragments)
+			digestFeedWriter.writeEntry(fragment);
+		digestFeedWriter.endFeed();
+	}
+	
+	
+	private static int render(DigestFeedView digestFeedView) throws Exception {
+		var response = new MockHttpServletResponse();
+		digestFeedView.render(null, new MockHttpServletRequest(), response);
+		return response.getContentAsByteArray().length;
+	}
+	
+}
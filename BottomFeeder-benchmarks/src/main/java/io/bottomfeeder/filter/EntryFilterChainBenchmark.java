@@ -0,0 +1,134 @@
+package io.bottomfeeder.filter;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.bottomfeeder.benchmark.FixtureFeed;
+
+/**
+ * Compares compiled entry filter chain with the chain composed of condition evaluators, 
+ * which parses filter values and reads element values on each evaluation. Both chains are 
+ * evaluated against all entries of a fixture feed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntryFilterChainBenchmark {
+
+	/**
+	 * Filter sets representative of digest filters.
+	 */
+	public enum FilterSet {
+		
+		KEYWORDS {
+			@Override
+			List<DigestEntryFilter> createFilters() {
+				return List.of(
+						filter(Element.TITLE, Condition.CONTAINS, "security", Connective.OR),
+						filter(Element.TITLE, Condition.CONTAINS, "kernel", Connective.OR),
+						filter(Element.CONTENT, Condition.CONTAINS, "vulnerability", Connective.OR),
+						filter(Element.CONTENT, Condition.CONTAINS, "encryption", Connective.AND),
+						filter(Element.CONTENT, Condition.DOES_NOT_CONTAIN, "sponsored", null));
+			}
+		},
+		MIXED {
+			@Override
+			List<DigestEntryFilter> createFilters() {
+				return List.of(
+						filter(Element.CATEGORIES, Condition.CONTAINS, "java", Connective.OR),
+						filter(Element.CATEGORIES, Condition.CONTAINS, "performance", Connective.AND),
+						filter(Element.PUBLISH_DATE, Condition.MORE_THAN, "01.01.2021", Connective.AND),
+						filter(Element.AUTHOR, Condition.DOES_NOT_EQUAL, "Eve Novak", Connective.AND),
+						filter(Element.TITLE, Condition.DOES_NOT_CONTAIN, "regression", null));
+			}
+		};
+		
+		abstract List<DigestEntryFilter> createFilters();
+	}
+	
+	
+	@Param
+	private FixtureFeed fixtureFeed;
+	
+	@Param
+	private FilterSet filterSet;
+	
+	private List<FilterableEntry> entries;
+	private Predicate<FilterableEntry> compiledChain;
+	private Predicate<FilterableEntry> evaluatorChain;
+	
+	
+	@Setup
+	public void setUp() {
+		entries = fixtureFeed.load().getEntries().stream().map(FilterableEntry::of).toList();
+		var filters = filterSet.createFilters();
+		compiledChain = EntryFilterChain.compile(filters);
+		evaluatorChain = composeEvaluatorChain(filters);
+	}
+	
+	
+	@Benchmark
+	public int compiledChain() {
+		return countMatches(compiledChain);
+	}
+	
+	
+	@Benchmark
+	public int evaluatorChain() {
+		return countMatches(evaluatorChain);
+	}
+	
+	
+	private int countMatches(Predicate<FilterableEntry> filterChain) {
+		var count = 0;
+		for (var entry : entries) {
+			if (filterChain.test(entry))
+				count++;
+		}
+		return count;
+	}
+	
+	
+	private static Predicate<FilterableEntry> composeEvaluatorChain(List<DigestEntryFilter> filters) {
+		Predicate<FilterableEntry> filterChain = null;
+		Connective connective = null;
+		for (var entryFilter : filters) {
+			var element = entryFilter.getElement();
+			var value = entryFilter.getValue();
+			var conditionEvaluator = DataTypeCondition.of(element.dataType(), entryFilter.getCondition())
+					.conditionEvaluator();
+			Predicate<FilterableEntry> filterPredicate = 
+					filterableEntry -> conditionEvaluator.evaluate(filterableEntry.getElementValue(element), value);
+			filterChain = filterChain == null ? filterPredicate : connective.compose(filterChain, filterPredicate);
+			connective = entryFilter.getConnective();
+		}
+		return filterChain;
+	}
+	
+	
+	private static DigestEntryFilter filter(Element element, Condition condition, String value, Connective connective) {
+		var entryFilter = new DigestEntryFilter();
+		entryFilter.setElement(element);
+		entryFilter.setCondition(condition);
+		entryFilter.setValue(value);
+		entryFilter.setConnective(connective);
+		return entryFilter;
+	}
+	
+}
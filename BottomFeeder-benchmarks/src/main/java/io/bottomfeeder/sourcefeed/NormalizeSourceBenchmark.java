@@ -0,0 +1,44 @@
+package io.bottomfeeder.sourcefeed;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures normalization of source feed sources, which is done for every source feed 
+ * on each scheduled update to group feeds by upstream source.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NormalizeSourceBenchmark {
+
+	private final String[] sources = {
+		"https://news.example.com/feed.xml",
+		"  HTTPS://News.Example.COM/feed.xml  ",
+		"http://blog.example.org:8080/posts/index.atom?category=java&format=atom",
+		"https://example.net/feeds/all.rss#latest",
+		"https://user@feeds.example.com/private/feed?token=0123456789abcdef",
+		"http://EXAMPLE.com",
+	};
+	
+	
+	@Benchmark
+	public void normalizeSource(Blackhole blackhole) {
+		for (var source : sources)
+			blackhole.consume(SourceFeedService.normalizeSource(source));
+	}
+	
+}
@@ -0,0 +1,23 @@
+package io.bottomfeeder.sourcefeed.entry;
+
+import java.util.List;
+
+import com.rometools.rome.feed.synd.SyndEntry;
+
+import io.bottomfeeder.digest.feed.DigestFeedFormat;
+
+/**
+ * Renders entry fragments for benchmarks outside of this package, the same way as they are 
+ * rendered on ingest.
+ */
+public final class EntryFragments {
+
+	private EntryFragments() {}
+	
+	
+	public static List<byte[]> render(List<SyndEntry> syndEntries, DigestFeedFormat targetFormat) {
+		var entryRenderer = new SourceFeedEntryRenderer();
+		return syndEntries.stream().map(syndEntry -> entryRenderer.renderFragment(syndEntry, targetFormat)).toList();
+	}
+	
+}
@@ -0,0 +1,89 @@
+package io.bottomfeeder.sourcefeed.entry;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.rometools.rome.feed.synd.SyndEntry;
+
+import io.bottomfeeder.benchmark.FixtureFeed;
+import io.bottomfeeder.digest.Digest;
+import io.bottomfeeder.digest.feed.DigestFeedFormat;
+import io.bottomfeeder.sourcefeed.SourceFeed;
+
+/**
+ * Measures serialization of source feed entries into stored content and parsing it back,
+ * as done by source feed entry service on ingest and for entries without extracted data or fragments.
+ * Each operation is applied to all entries of a fixture feed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SourceFeedEntryContentBenchmark {
+
+	@Param
+	private FixtureFeed fixtureFeed;
+	
+	private SourceFeedEntryService sourceFeedEntryService;
+	private String feedType;
+	private DigestFeedFormat targetFormat;
+	private List<SyndEntry> syndEntries;
+	private List<SourceFeedEntry> sourceFeedEntries;
+	
+	
+	@Setup
+	public void setUp() {
+		// Content serialization doesn't involve repositories or filters
+		sourceFeedEntryService = new SourceFeedEntryService(null, null, null);
+		
+		var feed = fixtureFeed.load();
+		feedType = feed.getFeedType();
+		targetFormat = fixtureFeed.digestFeedFormat();
+		syndEntries = feed.getEntries();
+		
+		var digest = new Digest("Benchmark", 100, false, null, "benchmark");
+		var sourceFeed = new SourceFeed("https://example.com/feed", 60, 0, digest);
+		sourceFeedEntries = new ArrayList<>();
+		for (var syndEntry : syndEntries) {
+			var content = writeContent(syndEntry);
+			sourceFeedEntries.add(new SourceFeedEntry(syndEntry.getUri(), Instant.now(), content, null, sourceFeed));
+		}
+	}
+	
+	
+	@Benchmark
+	public void writeContent(Blackhole blackhole) {
+		for (var syndEntry : syndEntries)
+			blackhole.consume(writeContent(syndEntry));
+	}
+	
+	
+	@Benchmark
+	public void readContent(Blackhole blackhole) {
+		for (var sourceFeedEntry : sourceFeedEntries)
+			blackhole.consume(sourceFeedEntryService.readSourceFeedEntryContent(sourceFeedEntry, targetFormat));
+	}
+	
+	
+	private byte[] writeContent(SyndEntry syndEntry) {
+		return sourceFeedEntryService.getContentBytes(SourceFeedEntryService.createEntryFeed(syndEntry, feedType));
+	}
+	
+}
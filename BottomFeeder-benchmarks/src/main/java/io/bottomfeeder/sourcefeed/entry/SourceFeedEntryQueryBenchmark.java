@@ -0,0 +1,295 @@
+package io.bottomfeeder.sourcefeed.entry;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.FileSystemUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.bottomfeeder.BottomFeederApplication;
+import io.bottomfeeder.benchmark.FixtureFeed;
+import io.bottomfeeder.digest.Digest;
+import io.bottomfeeder.digest.DigestRepository;
+import io.bottomfeeder.digest.feed.DigestFeedFormat;
+import io.bottomfeeder.filter.EntryElementQueryMapping;
+import io.bottomfeeder.sourcefeed.SourceFeedRepository;
+
+/**
+ * Measures database reads of source feed entries on a synthetic dataset of up to 2 million entries:
+ * top-N read of digest entries by digest ID index, keyset continuation deep into digest entries,
+ * read of entry states of a single source feed (as done when merging entries on update), and loading
+ * of the whole digest feed content, both without and with digest entry filters. Each dataset is
+ * measured both with and without source feed entry indexes, the latter as with schema before they
+ * were introduced.
+ *
+ * The application is started without scheduled updates, digests and source feeds are imported
+ * as initial data, and entries are inserted directly through JDBC. Dates of entries of different
+ * source feeds coincide, so that ordering ties are resolved by entry ID as in real digests.
+ * 
+ * Entries are stored in file-based H2 database in a temporary directory, unless external database 
+ * is specified by {@code bf.benchmark.datasource.url} system property (with optional 
+ * {@code bf.benchmark.datasource.username} and {@code bf.benchmark.datasource.password}), 
+ * e.g. to measure with PostgreSQL. Schema is created and dropped by the benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SourceFeedEntryQueryBenchmark {
+
+	private static final int DIGEST_COUNT = 10;
+	private static final int FEEDS_PER_DIGEST = 20;
+	private static final int DIGEST_MAX_ENTRIES = 100;
+	private static final String DIGEST_EXTERNAL_ID = "benchmark%08d";
+	private static final String INSERT_ENTRY_SQL = """
+			insert into source_feed_entry (entry_key, date, content, content_hash, title, folded_title, 
+				published_date, content_truncated, fields_truncated, rss_fragment, atom_fragment, fragments_rendered,
+				digest_id, source_feed_id)
+			values (?, ?, ?, ?, ?, ?, ?, false, false, ?, ?, true, ?, ?)
+			""";
+	private static final List<String> ENTRY_INDEXES = List.of(
+			"source_feed_entry_source_feed_date_idx", "source_feed_entry_digest_date_idx");
+	private static final String DATASOURCE_PROPERTY_PREFIX = "bf.benchmark.datasource.";
+	
+	@Param({"100", "1000", "10000"})
+	private int entriesPerFeed;
+	
+	@Param({"true", "false"})
+	private boolean indexed;
+	
+	private Path databaseDirectory;
+	private ConfigurableApplicationContext context;
+	private SourceFeedEntryRepository sourceFeedEntryRepository;
+	private SourceFeedEntryService sourceFeedEntryService;
+	private TransactionTemplate transactionTemplate;
+	private Digest digest;
+	private Digest filteredDigest;
+	private long sourceFeedId;
+	private SourceFeedEntry deepEntry;
+	
+	
+	@Setup
+	public void setUp() throws Exception {
+		var initialDataPath = writeInitialData();
+		try {
+			var args = new ArrayList<>(List.of(
+					"--spring.profiles.active=benchmark",
+					"--spring.jpa.hibernate.ddl-auto=create-drop",
+					"--server.port=0",
+					"--logging.level.root=WARN",
+					"--bf.scheduler.source-feed-update-enabled=false",
+					"--bf.data.enable-initial-data-import=true",
+					"--bf.data.initial-data-json=" + initialDataPath));
+			args.addAll(getDatasourceArgs());
+			context = new SpringApplicationBuilder(BottomFeederApplication.class).run(args.toArray(String[]::new));
+		}
+		finally {
+			Files.deleteIfExists(initialDataPath);
+		}
+	
+		sourceFeedEntryRepository = context.getBean(SourceFeedEntryRepository.class);
+		sourceFeedEntryService = context.getBean(SourceFeedEntryService.class);
+		transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+		transactionTemplate.setReadOnly(true);
+	
+		var digestRepository = context.getBean(DigestRepository.class);
+		var sourceFeedRepository = context.getBean(SourceFeedRepository.class);
+		var jdbcTemplate = context.getBean(JdbcTemplate.class);
+		if (!indexed) {
+			for (var index : ENTRY_INDEXES)
+				jdbcTemplate.execute("drop index " + index);
+		}
+		
+		var rssFragments = EntryFragments.render(FixtureFeed.RSS.loadEntries(100), DigestFeedFormat.RSS_2_0);
+		var atomFragments = EntryFragments.render(FixtureFeed.ATOM.loadEntries(100), DigestFeedFormat.ATOM_1_0);
+		for (int index = 0; index < DIGEST_COUNT; index++) {
+			var currentDigest = digestRepository.findOneByExternalId(String.format(DIGEST_EXTERNAL_ID, index))
+					.orElseThrow();
+			var sourceFeedIds = sourceFeedRepository.findIdsByDigest(currentDigest);
+			for (int feedIndex = 0; feedIndex < sourceFeedIds.size(); feedIndex++) {
+				insertEntries(jdbcTemplate, currentDigest.getId(), sourceFeedIds.get(feedIndex), feedIndex,
+						rssFragments, atomFragments);
+			}
+	
+			if (index == 0) {
+				digest = currentDigest;
+				sourceFeedId = sourceFeedIds.get(0);
+			}
+			else if (index == 1) {
+				filteredDigest = currentDigest;
+			}
+		}
+		// Planner statistics are refreshed after bulk insert, as autovacuum would eventually do
+		if (isPostgreSql(jdbcTemplate))
+			jdbcTemplate.execute("analyze source_feed_entry");
+	
+		// Entry halfway through digest entries, to continue after as the last of many consumed pages would
+		var deepEntryId = jdbcTemplate.queryForObject(
+				"select id from source_feed_entry where digest_id = ? order by date desc, id desc limit 1 offset ?",
+				Long.class, digest.getId(), entriesPerFeed * FEEDS_PER_DIGEST / 2);
+		deepEntry = sourceFeedEntryRepository.findById(deepEntryId).orElseThrow();
+	}
+	
+	
+	@TearDown
+	public void tearDown() {
+		context.close();
+		if (databaseDirectory != null)
+			FileSystemUtils.deleteRecursively(databaseDirectory.toFile());
+	}
+	
+	
+	@Benchmark
+	public List<SourceFeedEntry> digestFirstPage() {
+		return transactionTemplate.execute(status ->
+				sourceFeedEntryRepository.findDigestFeedEntries(digest.getId(), DigestFeedFormat.RSS_2_0, null, 
+						DIGEST_MAX_ENTRIES));
+	}
+	
+	
+	@Benchmark
+	public List<SourceFeedEntry> digestDeepPage() {
+		return transactionTemplate.execute(status ->
+				sourceFeedEntryRepository.findDigestFeedEntries(digest.getId(), DigestFeedFormat.RSS_2_0, deepEntry, 
+						DIGEST_MAX_ENTRIES));
+	}
+	
+	
+	@Benchmark
+	public List<SourceFeedEntryState> sourceFeedEntryStates() {
+		return transactionTemplate.execute(status -> sourceFeedEntryRepository.findStatesBySourceFeedId(sourceFeedId));
+	}
+	
+	
+	@Benchmark
+	public int digestFeedContent() {
+		return loadDigestFeedContent(digest);
+	}
+	
+	
+	@Benchmark
+	public int filteredDigestFeedContent() {
+		return loadDigestFeedContent(filteredDigest);
+	}
+	
+	
+	private int loadDigestFeedContent(Digest targetDigest) {
+		var size = new int[1];
+		sourceFeedEntryService.loadDigestFeedContent(targetDigest, DigestFeedFormat.RSS_2_0,
+				fragment -> size[0] += fragment.length);
+		return size[0];
+	}
+	
+	
+	private void insertEntries(JdbcTemplate jdbcTemplate, long digestId, long sourceFeedId, int feedIndex,
+			List<byte[]> rssFragments, List<byte[]> atomFragments) {
+		// Feeds with the same index modulo 5 share entry dates, and entries are 10 minutes apart
+		var latestDate = Instant.parse("2021-03-01T00:00:00Z").minusSeconds((feedIndex % 5) * 60L);
+		// Content is only read when entry has no pre-rendered fragments, which all synthetic entries have
+		var content = "<rss/>".getBytes(StandardCharsets.UTF_8);
+	
+		var batchArgs = new ArrayList<Object[]>(entriesPerFeed);
+		for (int index = 0; index < entriesPerFeed; index++) {
+			var key = String.format("%016x%016x", sourceFeedId, index);
+			var date = Timestamp.from(latestDate.minusSeconds(index * 600L));
+			var title = "Entry " + index;
+			batchArgs.add(new Object[] {key, date, content, key, title, EntryElementQueryMapping.foldCase(title), date,
+					rssFragments.get(index % rssFragments.size()), atomFragments.get(index % atomFragments.size()),
+					digestId, sourceFeedId});
+		}
+		jdbcTemplate.batchUpdate(INSERT_ENTRY_SQL, batchArgs);
+	}
+	
+	
+	private List<String> getDatasourceArgs() throws Exception {
+		var url = System.getProperty(DATASOURCE_PROPERTY_PREFIX + "url");
+		if (url == null) {
+			// File-based database, since the largest dataset doesn't fit in heap
+			databaseDirectory = Files.createTempDirectory("bf-benchmark-");
+			return List.of(
+					"--spring.datasource.url=jdbc:h2:file:" + databaseDirectory.resolve("BottomFeederBenchmark"),
+					"--spring.datasource.driver-class-name=org.h2.Driver");
+		}
+		
+		var args = new ArrayList<String>();
+		args.add("--spring.datasource.url=" + url);
+		for (var property : List.of("username", "password")) {
+			var value = System.getProperty(DATASOURCE_PROPERTY_PREFIX + property);
+			if (value != null)
+				args.add("--spring.datasource." + property + "=" + value);
+		}
+		return args;
+	}
+	
+	
+	private static boolean isPostgreSql(JdbcTemplate jdbcTemplate) {
+		return Boolean.TRUE.equals(jdbcTemplate.execute((Connection connection) -> 
+				connection.getMetaData().getDatabaseProductName().equals("PostgreSQL")));
+	}
+	
+	
+	private static Path writeInitialData() throws Exception {
+		var digests = new ArrayList<Map<String, Object>>();
+		for (int index = 0; index < DIGEST_COUNT; index++) {
+			var sourceFeeds = new ArrayList<Map<String, Object>>();
+			for (int feedIndex = 0; feedIndex < FEEDS_PER_DIGEST; feedIndex++) {
+				sourceFeeds.add(Map.of(
+						"source", String.format("http://feed%d.digest%d.invalid/feed.xml", feedIndex, index),
+						"contentUpdateInterval", 60,
+						"maxEntries", 0,
+						"entryFilters", List.of()));
+			}
+	
+			// Second digest selects entries by title, which is stored, so filter is also applied in query
+			var entryFilters = index == 1
+					? List.of(Map.of("ordinal", 1, "element", "TITLE", "condition", "CONTAINS", "value", "7"))
+					: List.of();
+			digests.add(Map.of(
+					"externalId", String.format(DIGEST_EXTERNAL_ID, index),
+					"title", "Benchmark digest " + index,
+					"maxEntries", DIGEST_MAX_ENTRIES,
+					"isPrivate", false,
+					"sourceFeeds", sourceFeeds,
+					"entryFilters", entryFilters));
+		}
+	
+		var initialData = Map.of("users", List.of(Map.of(
+				"login", "benchmark",
+				"password", Map.of("value", "benchmark", "format", "PLAIN_TEXT"),
+				"role", "ADMIN",
+				"digests", digests)));
+	
+		var path = Files.createTempFile("bf-benchmark-", ".json");
+		new ObjectMapper().writeValue(path.toFile(), initialData);
+		return path;
+	}
+
+}
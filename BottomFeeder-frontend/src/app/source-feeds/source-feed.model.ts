@@ -8,6 +8,8 @@ export class SourceFeed {
 		public contentUpdateDate: Date,
 		public contentUpdateInterval: number,
 		public maxEntries: number,
+		public failureCount: number,
+		public nextUpdateDate: Date,
 		public updateContent: boolean
 	) { }
 }
@@ -0,0 +1,174 @@
+package io.bottomfeeder.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Concurrent readers of digest feeds, each repeatedly requesting RSS or Atom feed of a random digest
+ * until stopped. A configured fraction of requests is sent with {@code If-None-Match} carrying the entity
+ * tag of the reader's previous response for the same feed, as feed readers polling for changes do.
+ * All requests accept gzip encoding.
+ */
+final class DigestFeedReaders {
+
+	private static final Logger logger = LoggerFactory.getLogger(DigestFeedReaders.class);
+	
+	private final LoadTestSettings settings;
+	private final List<URI> feedUris;
+	private final HttpClient httpClient;
+	private final List<Reader> readers = new ArrayList<>();
+	
+	private volatile boolean running;
+	
+	
+	/**
+	 * Reader results: request counts by outcome, and latency percentiles in milliseconds.
+	 */
+	record Stats(long requests, long ok, long notModified, long errors, long bytes, 
+			double p50, double p99, double max) {
+	}
+	
+	
+	DigestFeedReaders(LoadTestSettings settings, String applicationUrl, List<String> digestExternalIds) {
+		this.settings = settings;
+		this.feedUris = new ArrayList<>();
+		for (var externalId : digestExternalIds) {
+			feedUris.add(URI.create(applicationUrl + "/digest/" + externalId + "/feed.rss"));
+			feedUris.add(URI.create(applicationUrl + "/digest/" + externalId + "/feed.atom"));
+		}
+		this.httpClient = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_1_1)
+				.connectTimeout(Duration.ofSeconds(10))
+				.build();
+	}
+	
+	
+	void start() {
+		running = true;
+		for (int i = 0; i < settings.readers(); i++) {
+			var reader = new Reader(new Random(settings.seed() + i));
+			var thread = new Thread(reader, "Digest-Feed-Reader-" + i);
+			thread.setDaemon(true);
+			reader.thread = thread;
+			readers.add(reader);
+			thread.start();
+		}
+	}
+	
+	
+	Stats stop() throws InterruptedException {
+		running = false;
+		for (var reader : readers)
+			reader.thread.join(TimeUnit.SECONDS.toMillis(30));
+		
+		var requests = 0L;
+		var ok = 0L;
+		var notModified = 0L;
+		var errors = 0L;
+		var bytes = 0L;
+		for (var reader : readers) {
+			ok += reader.ok;
+			notModified += reader.notModified;
+			errors += reader.errors;
+			bytes += reader.bytes;
+			requests += reader.latencyCount;
+		}
+		
+		var latencies = new long[(int)requests];
+		var offset = 0;
+		for (var reader : readers) {
+			System.arraycopy(reader.latencies, 0, latencies, offset, reader.latencyCount);
+			offset += reader.latencyCount;
+		}
+		Arrays.sort(latencies);
+		return new Stats(requests, ok, notModified, errors, bytes, 
+				percentile(latencies, 0.5), percentile(latencies, 0.99), percentile(latencies, 1));
+	}
+	
+	
+	private static double percentile(long[] sortedLatencies, double percentile) {
+		if (sortedLatencies.length == 0)
+			return 0;
+		var index = (int)Math.ceil(percentile * sortedLatencies.length) - 1;
+		return sortedLatencies[Math.max(index, 0)] / 1e6;
+	}
+	
+	
+	/**
+	 * A single reader, with its own latency samples and counters, confined to reader thread.
+	 */
+	private final class Reader implements Runnable {
+		
+		private final Random random;
+		private final Map<URI, String> entityTags = new HashMap<>();
+		private Thread thread;
+		
+		private long[] latencies = new long[1024];
+		private int latencyCount;
+		private long ok;
+		private long notModified;
+		private long errors;
+		private long bytes;
+		
+		Reader(Random random) {
+			this.random = random;
+		}
+		
+		@Override
+		public void run() {
+			while (running) {
+				var feedUri = feedUris.get(random.nextInt(feedUris.size()));
+				var request = HttpRequest.newBuilder(feedUri)
+						.header("Accept-Encoding", "gzip")
+						.timeout(Duration.ofSeconds(30));
+				var entityTag = entityTags.get(feedUri);
+				if (entityTag != null && random.nextDouble() < settings.readerConditionalRate())
+					request.header("If-None-Match", entityTag);
+				
+				var start = System.nanoTime();
+				try {
+					var response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+					recordLatency(System.nanoTime() - start);
+					switch (response.statusCode()) {
+						case 200 -> {
+							ok++;
+							bytes += response.body().length;
+							response.headers().firstValue("ETag").ifPresent(tag -> entityTags.put(feedUri, tag));
+						}
+						case 304 -> notModified++;
+						default -> errors++;
+					}
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+				catch (Exception e) {
+					recordLatency(System.nanoTime() - start);
+					errors++;
+					logger.debug("Digest feed request failed: " + feedUri, e);
+				}
+			}
+		}
+		
+		private void recordLatency(long latency) {
+			if (latencyCount == latencies.length)
+				latencies = Arrays.copyOf(latencies, latencies.length * 2);
+			latencies[latencyCount++] = latency;
+		}
+	}
+	
+}
@@ -0,0 +1,79 @@
+package io.bottomfeeder.loadtest;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Periodically samples heap usage of the JVM running both the application and the load test,
+ * tracking peak usage, and reports garbage collection counts and time accumulated since start.
+ */
+final class HeapSampler implements AutoCloseable {
+
+	private static final long SAMPLE_INTERVAL_MILLIS = 200;
+	
+	private final ScheduledExecutorService sampler;
+	private final AtomicLong peakHeapUsed = new AtomicLong();
+	private final long startGcCount;
+	private final long startGcTime;
+	
+	
+	/**
+	 * Heap usage in bytes, and garbage collection count and time in milliseconds.
+	 */
+	record Stats(long peakUsed, long used, long max, long gcCount, long gcTime) {
+	}
+	
+	
+	HeapSampler() {
+		startGcCount = gcCount();
+		startGcTime = gcTime();
+		
+		var threadFactory = new CustomizableThreadFactory("Heap-Sampler-");
+		threadFactory.setDaemon(true);
+		sampler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+		sampler.scheduleAtFixedRate(this::sample, 0, SAMPLE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+	}
+	
+	
+	Stats stats() {
+		sample();
+		var heapUsage = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+		return new Stats(peakHeapUsed.get(), heapUsage.getUsed(), heapUsage.getMax(), 
+				gcCount() - startGcCount, gcTime() - startGcTime);
+	}
+	
+	
+	@Override
+	public void close() {
+		sampler.shutdownNow();
+	}
+	
+	
+	private void sample() {
+		var used = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+		peakHeapUsed.accumulateAndGet(used, Math::max);
+	}
+	
+	
+	private static long gcCount() {
+		return ManagementFactory.getGarbageCollectorMXBeans().stream()
+				.mapToLong(GarbageCollectorMXBean::getCollectionCount)
+				.filter(count -> count > 0)
+				.sum();
+	}
+	
+	
+	private static long gcTime() {
+		return ManagementFactory.getGarbageCollectorMXBeans().stream()
+				.mapToLong(GarbageCollectorMXBean::getCollectionTime)
+				.filter(time -> time > 0)
+				.sum();
+	}
+	
+}
@@ -0,0 +1,293 @@
+package io.bottomfeeder.loadtest;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.bottomfeeder.BottomFeederApplication;
+import io.bottomfeeder.sourcefeed.update.SourceFeedContentUpdateService;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * End-to-end load test of the application against a local stub feed server.
+ * 
+ * The load test starts {@link StubFeedServer} serving synthetic feeds, then starts the application 
+ * with {@code loadtest} profile, importing a user with public digests subscribed to all synthetic feeds
+ * as initial data. It runs the configured number of update rounds, each of which changes a fraction
+ * of feeds, makes all source feeds due for update and calls 
+ * {@link SourceFeedContentUpdateService#runScheduledUpdate()}, waiting until all fetch tasks 
+ * are complete. Digest feed readers are requesting digest feeds concurrently during all rounds.
+ * 
+ * Finally, it reports update throughput per round, reader throughput and latency percentiles,
+ * database row churn and heap usage.
+ * 
+ * Load test settings are passed as {@code --loadtest.*} arguments (see {@link LoadTestSettings}); 
+ * other arguments are passed to the application, so {@code --bf.*} and {@code --spring.*} properties 
+ * can be used to override application settings, including datasource.
+ */
+public final class LoadTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(LoadTest.class);
+	
+	private static final String FETCH_EXECUTOR_NAME = "source-feed-fetch";
+	private static final long IDLE_POLL_INTERVAL_MILLIS = 100;
+	private static final Duration ROUND_TIMEOUT = Duration.ofHours(1);
+	private static final int DIGEST_MAX_ENTRIES = 100;
+	private static final int CONTENT_UPDATE_INTERVAL = 10;
+	private static final String[] ENTRY_OPERATIONS = {"inserted", "updated", "deleted", "unchanged"};
+	
+	private final LoadTestSettings settings;
+	private final StubFeedServer stubFeedServer;
+	private final List<String> digestExternalIds;
+	private final ConfigurableApplicationContext context;
+	private final MeterRegistry meterRegistry;
+	private final JdbcTemplate jdbcTemplate;
+	private final Statistics statistics;
+	
+	
+	/**
+	 * Results of a single update round. Entry counts are taken from application's update metrics,
+	 * row counts from Hibernate statistics.
+	 */
+	private record RoundResult(int round, int changedFeeds, Duration duration, StubFeedServer.Stats responses,
+			long[] entries, long insertedRows, long updatedRows, long deletedRows, long statements) {
+	}
+	
+	
+	private LoadTest(LoadTestSettings settings, StubFeedServer stubFeedServer, List<String> digestExternalIds,
+			ConfigurableApplicationContext context) {
+		this.settings = settings;
+		this.stubFeedServer = stubFeedServer;
+		this.digestExternalIds = digestExternalIds;
+		this.context = context;
+		this.meterRegistry = context.getBean(MeterRegistry.class);
+		this.jdbcTemplate = context.getBean(JdbcTemplate.class);
+		this.statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+	}
+	
+	
+	public static void main(String[] args) throws Exception {
+		var environment = new StandardEnvironment();
+		environment.getPropertySources().addFirst(new SimpleCommandLinePropertySource(args));
+		var settings = LoadTestSettings.of(environment);
+		logger.info("Starting load test with " + settings);
+		
+		try (var stubFeedServer = new StubFeedServer(settings, 0)) {
+			var digestExternalIds = new ArrayList<String>();
+			var initialDataPath = writeInitialData(settings, stubFeedServer.feedUrls(), digestExternalIds);
+			
+			var applicationArgs = new ArrayList<String>();
+			applicationArgs.add("--spring.profiles.active=loadtest");
+			applicationArgs.add("--bf.data.initial-data-json=" + initialDataPath);
+			applicationArgs.addAll(List.of(args));
+			
+			try (var context = new SpringApplicationBuilder(BottomFeederApplication.class)
+					.run(applicationArgs.toArray(String[]::new))) {
+				new LoadTest(settings, stubFeedServer, digestExternalIds, context).run();
+			}
+			finally {
+				Files.deleteIfExists(initialDataPath);
+			}
+		}
+	}
+	
+	
+	private void run() throws InterruptedException {
+		// Update run on application startup may still be in progress
+		waitForIdleFetchers();
+		
+		try (var heapSampler = new HeapSampler()) {
+			var port = ((WebServerApplicationContext)context).getWebServer().getPort();
+			var readers = new DigestFeedReaders(settings, "http://localhost:" + port, digestExternalIds);
+			var random = new Random(settings.seed());
+			var roundResults = new ArrayList<RoundResult>();
+			
+			readers.start();
+			var start = System.nanoTime();
+			for (int round = 1; round <= settings.rounds(); round++) {
+				// First round loads feeds as they are, subsequent rounds apply changes
+				var changedFeeds = round > 1 ? stubFeedServer.advance(random) : 0;
+				roundResults.add(runRound(round, changedFeeds));
+				logger.info(String.format("Completed update round %d of %d", round, settings.rounds()));
+			}
+			var readerStats = readers.stop();
+			var elapsed = Duration.ofNanos(System.nanoTime() - start);
+			
+			report(roundResults, readerStats, elapsed, heapSampler.stats());
+		}
+	}
+	
+	
+	private RoundResult runRound(int round, int changedFeeds) throws InterruptedException {
+		markFeedsDue();
+		
+		var responsesBefore = stubFeedServer.stats();
+		var entriesBefore = entryCounts();
+		var insertedBefore = statistics.getEntityInsertCount();
+		var updatedBefore = statistics.getEntityUpdateCount();
+		var deletedBefore = statistics.getEntityDeleteCount();
+		var statementsBefore = statistics.getPrepareStatementCount();
+		
+		var start = System.nanoTime();
+		context.getBean(SourceFeedContentUpdateService.class).runScheduledUpdate();
+		waitForIdleFetchers();
+		var duration = Duration.ofNanos(System.nanoTime() - start);
+		
+		var entries = entryCounts();
+		for (int i = 0; i < entries.length; i++)
+			entries[i] -= entriesBefore[i];
+		
+		return new RoundResult(round, changedFeeds, duration, stubFeedServer.stats().minus(responsesBefore), entries,
+				statistics.getEntityInsertCount() - insertedBefore, 
+				statistics.getEntityUpdateCount() - updatedBefore,
+				statistics.getEntityDeleteCount() - deletedBefore,
+				statistics.getPrepareStatementCount() - statementsBefore);
+	}
+	
+	
+	private void markFeedsDue() {
+		// Simulates passing of content update interval; retry delays after failures are left as they are
+		var dueDate = Instant.now().minus(Duration.ofMinutes(CONTENT_UPDATE_INTERVAL + 1));
+		jdbcTemplate.update("update source_feed set content_update_date = ? where content_update_date is not null", 
+				Timestamp.from(dueDate));
+	}
+	
+	
+	private void waitForIdleFetchers() throws InterruptedException {
+		// Fetch is in progress while it's pending in scheduler, or queued or active in executor.
+		// Idle state must be observed twice, as there is a short gap between the two.
+		var deadline = System.nanoTime() + ROUND_TIMEOUT.toNanos();
+		var idleCount = 0;
+		while (idleCount < 2) {
+			if (System.nanoTime() - deadline > 0)
+				throw new IllegalStateException("Timed out waiting for source feed updates to complete");
+			
+			TimeUnit.MILLISECONDS.sleep(IDLE_POLL_INTERVAL_MILLIS);
+			var busy = meterRegistry.get("bf.fetch.pending").gauge().value() 
+					+ meterRegistry.get("executor.queued").tag("name", FETCH_EXECUTOR_NAME).gauge().value()
+					+ meterRegistry.get("executor.active").tag("name", FETCH_EXECUTOR_NAME).gauge().value();
+			idleCount = busy == 0 ? idleCount + 1 : 0;
+		}
+	}
+	
+	
+	private long[] entryCounts() {
+		var counts = new long[ENTRY_OPERATIONS.length];
+		for (int i = 0; i < counts.length; i++)
+			counts[i] = (long)meterRegistry.get("bf.update.entries").tag("operation", ENTRY_OPERATIONS[i])
+					.summary().totalAmount();
+		return counts;
+	}
+	
+	
+	private void report(List<RoundResult> roundResults, DigestFeedReaders.Stats readerStats, Duration elapsed,
+			HeapSampler.Stats heapStats) {
+		var out = System.out;
+		out.println();
+		out.println("=== Load test results ===");
+		out.printf("Feeds: %d on %d hosts, digests: %d, readers: %d, elapsed: %.1f s%n", 
+				settings.feeds(), settings.hosts(), settings.digests(), settings.readers(), seconds(elapsed));
+		
+		out.println();
+		out.println("Update rounds:");
+		out.printf("%5s %8s %9s %9s %7s %7s %7s %9s %9s %9s %9s %9s %9s %9s%n", 
+				"round", "changed", "time s", "feeds/s", "200", "304", "429", "MB in",
+				"ins", "upd", "del", "row ins", "row upd", "row del");
+		var totalResponses = 0L;
+		var totalUpdateSeconds = 0.0;
+		for (var result : roundResults) {
+			var responses = result.responses();
+			var roundSeconds = seconds(result.duration());
+			totalResponses += responses.total();
+			totalUpdateSeconds += roundSeconds;
+			out.printf("%5d %8d %9.2f %9.1f %7d %7d %7d %9.2f %9d %9d %9d %9d %9d %9d%n",
+					result.round(), result.changedFeeds(), roundSeconds, responses.total() / roundSeconds,
+					responses.ok(), responses.notModified(), responses.throttled(), responses.bytes() / 1e6,
+					result.entries()[0], result.entries()[1], result.entries()[2],
+					result.insertedRows(), result.updatedRows(), result.deletedRows());
+		}
+		out.printf("Update throughput: %.1f feeds/s, statements prepared: %d, source feed entry rows: %d%n",
+				totalResponses / totalUpdateSeconds, 
+				roundResults.stream().mapToLong(RoundResult::statements).sum(),
+				jdbcTemplate.queryForObject("select count(*) from source_feed_entry", Long.class));
+		
+		out.println();
+		out.printf("Digest feed readers: %d requests, %.1f req/s (200: %d, 304: %d, errors: %d), %.2f MB%n",
+				readerStats.requests(), readerStats.requests() / seconds(elapsed), readerStats.ok(), 
+				readerStats.notModified(), readerStats.errors(), readerStats.bytes() / 1e6);
+		out.printf("Digest feed latency: p50 %.2f ms, p99 %.2f ms, max %.2f ms%n", 
+				readerStats.p50(), readerStats.p99(), readerStats.max());
+		
+		out.println();
+		out.printf("Heap: peak %.1f MB, current %.1f MB, max %.1f MB, GC: %d collections, %d ms%n",
+				heapStats.peakUsed() / 1e6, heapStats.used() / 1e6, heapStats.max() / 1e6, 
+				heapStats.gcCount(), heapStats.gcTime());
+	}
+	
+	
+	private static double seconds(Duration duration) {
+		return duration.toNanos() / 1e9;
+	}
+	
+	
+	private static Path writeInitialData(LoadTestSettings settings, List<String> feedUrls, 
+			List<String> digestExternalIds) throws Exception {
+		// Feeds are distributed across digests round-robin, so that each digest mixes hosts and formats
+		var sourceFeeds = new ArrayList<List<Map<String, Object>>>();
+		for (int digest = 0; digest < settings.digests(); digest++)
+			sourceFeeds.add(new ArrayList<>());
+		for (int index = 0; index < feedUrls.size(); index++) {
+			sourceFeeds.get(index % settings.digests()).add(Map.of(
+					"source", feedUrls.get(index),
+					"contentUpdateInterval", CONTENT_UPDATE_INTERVAL,
+					"maxEntries", settings.entriesPerFeed(),
+					"entryFilters", List.of()));
+		}
+		
+		var digests = new ArrayList<Map<String, Object>>();
+		for (int digest = 0; digest < settings.digests(); digest++) {
+			var externalId = String.format("loadtest%08d", digest);
+			digestExternalIds.add(externalId);
+			digests.add(Map.of(
+					"externalId", externalId,
+					"title", "Load test digest " + digest,
+					"maxEntries", DIGEST_MAX_ENTRIES,
+					"isPrivate", false,
+					"sourceFeeds", sourceFeeds.get(digest),
+					"entryFilters", List.of()));
+		}
+		
+		var initialData = Map.of("users", List.of(Map.of(
+				"login", "loadtest",
+				"password", Map.of("value", "loadtest", "format", "PLAIN_TEXT"),
+				"role", "ADMIN",
+				"digests", digests)));
+		
+		var path = Files.createTempFile("bf-loadtest-", ".json");
+		new ObjectMapper().writeValue(path.toFile(), initialData);
+		return path;
+	}
+	
+}
@@ -0,0 +1,79 @@
+package io.bottomfeeder.loadtest;
+
+import org.springframework.core.env.Environment;
+
+/**
+ * Load test settings, read from {@code loadtest.*} command line arguments.
+ * 
+ * @param feeds number of synthetic source feeds, each served by stub feed server at its own URL
+ * @param hosts number of loopback addresses feeds are spread over, seen by the application as distinct hosts
+ * @param digests number of digests feeds are distributed across
+ * @param entriesPerFeed number of entries in each synthetic feed
+ * @param entrySize approximate size of entry content in bytes
+ * @param latencyMillis base latency of stub feed server responses
+ * @param latencyJitterMillis maximum random latency added to base latency
+ * @param changeRate fraction of feeds that get a new entry before each update round
+ * @param conditionalRequests whether stub feed server answers conditional requests with 304 Not Modified
+ * @param throttleRate fraction of feed requests answered with 429 Too Many Requests
+ * @param retryAfterSeconds value of {@code Retry-After} header sent with 429 responses
+ * @param rounds number of update rounds
+ * @param readers number of concurrent digest feed readers
+ * @param readerConditionalRate fraction of reader requests sent with {@code If-None-Match}
+ * @param seed random seed for feed changes and throttling
+ */
+record LoadTestSettings(
+		int feeds,
+		int hosts,
+		int digests,
+		int entriesPerFeed,
+		int entrySize,
+		int latencyMillis,
+		int latencyJitterMillis,
+		double changeRate,
+		boolean conditionalRequests,
+		double throttleRate,
+		int retryAfterSeconds,
+		int rounds,
+		int readers,
+		double readerConditionalRate,
+		long seed) {
+
+	private static final String PREFIX = "loadtest.";
+	
+	
+	static LoadTestSettings of(Environment environment) {
+		var settings = new LoadTestSettings(
+				environment.getProperty(PREFIX + "feeds", Integer.class, 2000),
+				environment.getProperty(PREFIX + "hosts", Integer.class, 50),
+				environment.getProperty(PREFIX + "digests", Integer.class, 100),
+				environment.getProperty(PREFIX + "entries-per-feed", Integer.class, 20),
+				environment.getProperty(PREFIX + "entry-size", Integer.class, 1000),
+				environment.getProperty(PREFIX + "latency-millis", Integer.class, 50),
+				environment.getProperty(PREFIX + "latency-jitter-millis", Integer.class, 50),
+				environment.getProperty(PREFIX + "change-rate", Double.class, 0.2),
+				environment.getProperty(PREFIX + "conditional-requests", Boolean.class, Boolean.TRUE),
+				environment.getProperty(PREFIX + "throttle-rate", Double.class, 0.02),
+				environment.getProperty(PREFIX + "retry-after-seconds", Integer.class, 60),
+				environment.getProperty(PREFIX + "rounds", Integer.class, 5),
+				environment.getProperty(PREFIX + "readers", Integer.class, 16),
+				environment.getProperty(PREFIX + "reader-conditional-rate", Double.class, 0.5),
+				environment.getProperty(PREFIX + "seed", Long.class, 1L));
+		settings.validate();
+		return settings;
+	}
+	
+	
+	private void validate() {
+		// Loopback addresses used for hosts are 127.0.0.1 - 127.0.0.254
+		if (feeds < 1 || hosts < 1 || hosts > 254 || digests < 1 || entriesPerFeed < 1 || entrySize < 0 
+				|| latencyMillis < 0 || latencyJitterMillis < 0 || rounds < 1 || readers < 0 || retryAfterSeconds < 0
+				|| !isRate(changeRate) || !isRate(throttleRate) || !isRate(readerConditionalRate))
+			throw new IllegalArgumentException("Invalid load test settings: " + this);
+	}
+	
+	
+	private static boolean isRate(double value) {
+		return value >= 0 && value <= 1;
+	}
+	
+}
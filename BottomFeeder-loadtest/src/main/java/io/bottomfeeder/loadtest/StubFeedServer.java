@@ -0,0 +1,302 @@
+package io.bottomfeeder.loadtest;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.web.util.HtmlUtils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Embedded HTTP server serving synthetic RSS and Atom feeds for load test.
+ * 
+ * Feeds are identified by index and served at {@code /feeds/<index>.rss} or {@code /feeds/<index>.atom},
+ * alternating formats. Feed URLs are spread over loopback addresses {@code 127.0.0.1 - 127.0.0.<hosts>},
+ * which the application treats as distinct hosts. Note that on some systems (e.g. macOS) only 
+ * {@code 127.0.0.1} is configured by default, so additional loopback aliases have to be added.
+ * 
+ * Each feed has a revision, which is incremented by {@link #advance(Random)} for a fraction of feeds.
+ * A feed of revision {@code r} contains a sliding window of entries numbered from {@code r}, so each 
+ * change adds one entry and drops the oldest one. Revision is used as entity tag, so that conditional
+ * requests for unchanged feeds are answered with 304 Not Modified, if enabled. A configured fraction of
+ * requests is answered with 429 Too Many Requests and {@code Retry-After} header instead.
+ */
+final class StubFeedServer implements AutoCloseable {
+
+	private static final String FEED_PATH = "/feeds/";
+	private static final DateTimeFormatter RSS_DATE_FORMAT = DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+	private static final DateTimeFormatter ATOM_DATE_FORMAT = DateTimeFormatter.ISO_INSTANT;
+	
+	private static final String[] WORDS = {
+		"release", "security", "kernel", "database", "performance", "cloud", "network", "update",
+		"compiler", "storage", "latency", "cluster", "browser", "protocol", "encryption", "regression"
+	};
+	
+	private static final String[] CATEGORIES = {"Java", "Databases", "Security", "Cloud", "Performance", "Linux"};
+	
+	private final LoadTestSettings settings;
+	private final HttpServer httpServer;
+	private final ExecutorService executor;
+	private final Instant baseDate = Instant.now().minus(Duration.ofDays(1)).truncatedTo(ChronoUnit.SECONDS);
+	
+	private final AtomicIntegerArray revisions;
+	private final AtomicIntegerArray requestCounts;
+	
+	private final LongAdder okResponses = new LongAdder();
+	private final LongAdder notModifiedResponses = new LongAdder();
+	private final LongAdder throttledResponses = new LongAdder();
+	private final LongAdder bytesServed = new LongAdder();
+	
+	
+	/**
+	 * Counts of responses served, by status.
+	 */
+	record Stats(long ok, long notModified, long throttled, long bytes) {
+		
+		long total() {
+			return ok + notModified + throttled;
+		}
+		
+		Stats minus(Stats stats) {
+			return new Stats(ok - stats.ok, notModified - stats.notModified, throttled - stats.throttled, 
+					bytes - stats.bytes);
+		}
+	}
+	
+	
+	StubFeedServer(LoadTestSettings settings, int port) throws IOException {
+		this.settings = settings;
+		this.revisions = new AtomicIntegerArray(settings.feeds());
+		this.requestCounts = new AtomicIntegerArray(settings.feeds());
+		
+		var threadFactory = new CustomizableThreadFactory("Stub-Feed-Server-");
+		threadFactory.setDaemon(true);
+		this.executor = Executors.newCachedThreadPool(threadFactory);
+		
+		// Wildcard address accepts connections to every loopback address
+		this.httpServer = HttpServer.create(new InetSocketAddress(port), 1000);
+		this.httpServer.createContext(FEED_PATH, this::handle);
+		this.httpServer.setExecutor(executor);
+		this.httpServer.start();
+	}
+	
+	
+	int port() {
+		return httpServer.getAddress().getPort();
+	}
+	
+	
+	/**
+	 * Returns URLs of all feeds, in index order.
+	 */
+	List<String> feedUrls() {
+		var feedUrls = new ArrayList<String>(settings.feeds());
+		for (int index = 0; index < settings.feeds(); index++)
+			feedUrls.add(feedUrl(index));
+		return feedUrls;
+	}
+	
+	
+	/**
+	 * Adds a new entry to each feed with the probability of configured change rate.
+	 * 
+	 * @return number of changed feeds
+	 */
+	int advance(Random random) {
+		var changed = 0;
+		for (int index = 0; index < settings.feeds(); index++) {
+			if (random.nextDouble() < settings.changeRate()) {
+				revisions.incrementAndGet(index);
+				changed++;
+			}
+		}
+		return changed;
+	}
+	
+	
+	Stats stats() {
+		return new Stats(okResponses.sum(), notModifiedResponses.sum(), throttledResponses.sum(), bytesServed.sum());
+	}
+	
+	
+	@Override
+	public void close() {
+		httpServer.stop(0);
+		executor.shutdownNow();
+	}
+	
+	
+	private String feedUrl(int index) {
+		var host = "127.0.0." + (1 + index % settings.hosts());
+		return String.format("http://%s:%d%s%d.%s", host, port(), FEED_PATH, index, isRss(index) ? "rss" : "atom");
+	}
+	
+	
+	private void handle(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			var index = parseIndex(exchange.getRequestURI().getPath());
+			if (index < 0 || index >= settings.feeds()) {
+				exchange.sendResponseHeaders(404, -1);
+				return;
+			}
+			
+			simulateLatency();
+			
+			var requestCount = requestCounts.incrementAndGet(index);
+			if (uniform(index, requestCount) < settings.throttleRate()) {
+				throttledResponses.increment();
+				exchange.getResponseHeaders().set("Retry-After", Integer.toString(settings.retryAfterSeconds()));
+				exchange.sendResponseHeaders(429, -1);
+				return;
+			}
+			
+			var revision = revisions.get(index);
+			var entityTag = "\"" + index + "-" + revision + "\"";
+			if (settings.conditionalRequests() && entityTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+				notModifiedResponses.increment();
+				exchange.getResponseHeaders().set("ETag", entityTag);
+				exchange.sendResponseHeaders(304, -1);
+				return;
+			}
+			
+			var content = renderFeed(index, revision).getBytes(StandardCharsets.UTF_8);
+			var headers = exchange.getResponseHeaders();
+			headers.set("Content-Type", isRss(index) ? "application/rss+xml; charset=UTF-8" : "application/atom+xml; charset=UTF-8");
+			if (settings.conditionalRequests()) {
+				headers.set("ETag", entityTag);
+				headers.set("Last-Modified", RSS_DATE_FORMAT.format(entryDate(revision + settings.entriesPerFeed() - 1)));
+			}
+			exchange.sendResponseHeaders(200, content.length);
+			exchange.getResponseBody().write(content);
+			okResponses.increment();
+			bytesServed.add(content.length);
+		}
+	}
+	
+	
+	private void simulateLatency() {
+		var latency = settings.latencyMillis();
+		if (settings.latencyJitterMillis() > 0)
+			latency += ThreadLocalRandom.current().nextInt(settings.latencyJitterMillis() + 1);
+		if (latency > 0) {
+			try {
+				TimeUnit.MILLISECONDS.sleep(latency);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	
+	private String renderFeed(int index, int revision) {
+		var url = feedUrl(index);
+		var out = new StringBuilder(settings.entriesPerFeed() * (settings.entrySize() + 400) + 500);
+		var newest = revision + settings.entriesPerFeed() - 1;
+		out.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		if (isRss(index)) {
+			out.append("<rss version=\"2.0\"><channel>")
+				.append("<title>Synthetic feed ").append(index).append("</title>")
+				.append("<link>").append(url).append("</link>")
+				.append("<description>Synthetic feed ").append(index).append("</description>")
+				.append("<pubDate>").append(RSS_DATE_FORMAT.format(entryDate(newest))).append("</pubDate>\n");
+			for (int number = newest; number >= revision; number--) {
+				out.append("<item>")
+					.append("<title>").append(entryTitle(index, number)).append("</title>")
+					.append("<link>").append(url).append("#").append(number).append("</link>")
+					.append("<guid isPermaLink=\"false\">feed-").append(index).append("-entry-").append(number).append("</guid>")
+					.append("<pubDate>").append(RSS_DATE_FORMAT.format(entryDate(number))).append("</pubDate>")
+					.append("<category>").append(CATEGORIES[number % CATEGORIES.length]).append("</category>")
+					.append("<description>").append(HtmlUtils.htmlEscape(entryContent(index, number))).append("</description>")
+					.append("</item>\n");
+			}
+			out.append("</channel></rss>\n");
+		}
+		else {
+			out.append("<feed xmlns=\"http://www.w3.org/2005/Atom\">")
+				.append("<title>Synthetic feed ").append(index).append("</title>")
+				.append("<id>").append(url).append("</id>")
+				.append("<link href=\"").append(url).append("\"/>")
+				.append("<updated>").append(ATOM_DATE_FORMAT.format(entryDate(newest))).append("</updated>\n");
+			for (int number = newest; number >= revision; number--) {
+				var date = ATOM_DATE_FORMAT.format(entryDate(number));
+				out.append("<entry>")
+					.append("<title>").append(entryTitle(index, number)).append("</title>")
+					.append("<id>urn:feed-").append(index).append(":entry-").append(number).append("</id>")
+					.append("<link href=\"").append(url).append("#").append(number).append("\"/>")
+					.append("<published>").append(date).append("</published>")
+					.append("<updated>").append(date).append("</updated>")
+					.append("<author><name>Author ").append(number % 7).append("</name></author>")
+					.append("<category term=\"").append(CATEGORIES[number % CATEGORIES.length]).append("\"/>")
+					.append("<content type=\"text\">").append(HtmlUtils.htmlEscape(entryContent(index, number))).append("</content>")
+					.append("</entry>\n");
+			}
+			out.append("</feed>\n");
+		}
+		return out.toString();
+	}
+	
+	
+	private static String entryTitle(int index, int number) {
+		return "Feed " + index + " " + WORDS[(index + number) % WORDS.length] + " " + number;
+	}
+	
+	
+	private String entryContent(int index, int number) {
+		var content = new StringBuilder(settings.entrySize() + 16);
+		for (int word = index + number; content.length() < settings.entrySize(); word += 7)
+			content.append(WORDS[Math.floorMod(word, WORDS.length)]).append(' ');
+		return content.toString();
+	}
+	
+	
+	private Instant entryDate(int number) {
+		return baseDate.plus(Duration.ofMinutes(number));
+	}
+	
+	
+	private static boolean isRss(int index) {
+		return index % 2 == 0;
+	}
+	
+	
+	private static int parseIndex(String path) {
+		var end = path.lastIndexOf('.');
+		if (!path.startsWith(FEED_PATH) || end <= FEED_PATH.length())
+			return -1;
+		try {
+			return Integer.parseInt(path.substring(FEED_PATH.length(), end));
+		}
+		catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+	
+	
+	private double uniform(int index, int requestCount) {
+		// SplitMix64 of seed, feed index and request count, so that throttling is reproducible
+		var z = settings.seed() + 0x9E3779B97F4A7C15L * (((long)index << 32) | requestCount);
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		z = z ^ (z >>> 31);
+		return (z >>> 11) * 0x1.0p-53;
+	}
+	
+}